@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mssmb2.SMB2CreateOptions;
+import com.hierynomus.mssmb2.SMB2FileId;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.mssmb2.messages.SMB2CreateResponse;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smbj.share.DiskShare;
+import org.apache.camel.component.file.GenericFileExist;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class stores a file without blocking on any response. The create, write and close requests are sent as soon as
+ * the preceding responses allow it, and the store is advanced by polling the responses which have arrived meanwhile.
+ * Waiting for the next response is left to the one who polls the store.
+ * The disk share is shared with the other stores in flight, and it is given back when the store is complete or aborted.
+ *
+ * @since 10/16/2026
+ */
+public class SmbAsyncFileStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SmbAsyncFileStore.class);
+    private final SmbSharedDiskShare sharedShare;
+    private final DiskShare share;
+    private final String name;
+    private final GenericFileExist fileExist;
+    private final SmbConfiguration configuration;
+    private final SmbBufferPool bufferPool;
+    private final ByteBuffer data;
+    private final FileChannel channel;
+    private final long timeout;
+    private final Future<SMB2CreateResponse> create;
+    private final long createSentAt = System.currentTimeMillis();
+    private SMB2FileId fileId;
+    private SmbPipelinedTransfer.AsyncUpload upload;
+    private boolean stored = false;
+    private boolean done = false;
+
+    /**
+     * @param sharedShare   the shared disk share the disk share has been acquired from
+     * @param share         the acquired disk share to store the file on, which is given back when the store is complete or aborted
+     * @param name          the normalized name of the file to store
+     * @param fileExist     the strategy for existing files, which must be resolvable by the create disposition alone
+     * @param data          the content to store between its position and limit, which must not be modified until the store is complete
+     * @param configuration the configuration holding the chunk size, pipeline depth and timeouts
+     * @param bufferPool    the pool to acquire the transfer buffers from
+     * @throws IOException if sending the create request fails
+     */
+    public SmbAsyncFileStore(final SmbSharedDiskShare sharedShare,
+                             final DiskShare share,
+                             final String name,
+                             final GenericFileExist fileExist,
+                             final ByteBuffer data,
+                             final SmbConfiguration configuration,
+                             final SmbBufferPool bufferPool) throws IOException {
+        this(sharedShare, share, name, fileExist, Objects.requireNonNull(data, "Cannot store null data"), null, configuration, bufferPool);
+    }
+
+    /**
+     * @param sharedShare   the shared disk share the disk share has been acquired from
+     * @param share         the acquired disk share to store the file on, which is given back when the store is complete or aborted
+     * @param name          the normalized name of the file to store
+     * @param fileExist     the strategy for existing files, which must be resolvable by the create disposition alone
+     * @param channel       the local file channel to store the content of, which is closed when the store is complete or aborted
+     * @param configuration the configuration holding the chunk size, pipeline depth and timeouts
+     * @param bufferPool    the pool to acquire the transfer buffers from
+     * @throws IOException if sending the create request fails, whereby the channel is closed
+     */
+    public SmbAsyncFileStore(final SmbSharedDiskShare sharedShare,
+                             final DiskShare share,
+                             final String name,
+                             final GenericFileExist fileExist,
+                             final FileChannel channel,
+                             final SmbConfiguration configuration,
+                             final SmbBufferPool bufferPool) throws IOException {
+        this(sharedShare, share, name, fileExist, null, Objects.requireNonNull(channel, "Cannot store a null channel"), configuration, bufferPool);
+    }
+
+    private SmbAsyncFileStore(final SmbSharedDiskShare sharedShare,
+                              final DiskShare share,
+                              final String name,
+                              final GenericFileExist fileExist,
+                              final ByteBuffer data,
+                              final FileChannel channel,
+                              final SmbConfiguration configuration,
+                              final SmbBufferPool bufferPool) throws IOException {
+        this.sharedShare = Objects.requireNonNull(sharedShare, "Cannot store a file with a null shared disk share");
+        this.share = Objects.requireNonNull(share, "Cannot store a file on a null disk share");
+        this.name = Objects.requireNonNull(name, "Cannot store a file with a null name");
+        this.fileExist = Objects.requireNonNull(fileExist, "Cannot store a file with a null fileExist strategy");
+        this.configuration = Objects.requireNonNull(configuration, "Cannot store a file with a null configuration");
+        this.bufferPool = Objects.requireNonNull(bufferPool, "Cannot store a file with a null buffer pool");
+        this.data = data;
+        this.channel = channel;
+        this.timeout = Optional.ofNullable(configuration.getWriteTimeout()).orElse(configuration.getTimeout());
+        try {
+            this.create = SmbMetadataOperations.sendCreate(share,
+                                                           name,
+                                                           EnumSet.of(AccessMask.GENERIC_READ, AccessMask.GENERIC_WRITE),
+                                                           EnumSet.of(SMB2ShareAccess.FILE_SHARE_WRITE),
+                                                           SmbFileOperations.toCreateDisposition(fileExist),
+                                                           EnumSet.of(SMB2CreateOptions.FILE_NON_DIRECTORY_FILE));
+        } catch (IOException | RuntimeException e) {
+            closeChannel();
+            throw e;
+        }
+    }
+
+    /**
+     * Handles the responses which have arrived meanwhile and sends further requests, without waiting for any response.
+     * When the store is complete, then the disk share is given back.
+     *
+     * @return true if the store is complete, false otherwise
+     * @throws Exception if the store failed, which must be aborted then
+     */
+    public boolean poll() throws Exception {
+        if (done) {
+            return true;
+        }
+        if (upload == null) {
+            if (!create.isDone()) {
+                if (timeout > 0 && System.currentTimeMillis() - createSentAt > timeout) {
+                    throw new TransportException(String.format("Create of '%s' has not been acknowledged within '%d' milliseconds", name, timeout));
+                }
+                return false;
+            }
+            final SMB2CreateResponse response = Futures.get(create, timeout, TimeUnit.MILLISECONDS, TransportException.Wrapper);
+            if (!response.isSuccess()) {
+                SmbFileOperations.handleStoreOpenFailure(new SMBApiException(response.getHeader(), String.format("Create of '%s' failed", name)), name, fileExist);
+                complete(null);
+                return true;
+            }
+            fileId = response.getFileId();
+            final SmbPipelinedTransfer transfer = new SmbPipelinedTransfer(share, fileId, name, configuration, bufferPool);
+            upload = (channel != null) ? transfer.uploadAsync(channel, 0) : transfer.uploadAsync(data, 0);
+        }
+        if (!upload.poll()) {
+            return false;
+        }
+        stored = true;
+        complete(null);
+        return true;
+    }
+
+    /**
+     * Aborts the failed store. An open remote file is closed without waiting for the response,
+     * and the disk share is given back, whereby it is discarded by its last user if the failure is a connection failure.
+     *
+     * @param error the failure of the store
+     */
+    public void abort(final Exception error) {
+        if (done) {
+            return;
+        }
+        if (fileId != null && (upload == null || !upload.isClosing()) && !SmbDiskSharePool.isConnectionFailure(error)) {
+            try {
+                SmbMetadataOperations.sendClose(share, fileId);
+            } catch (Exception e) {
+                LOG.debug(String.format("Could not close '%s' after the failed store", name), e);
+            }
+        }
+        complete(error);
+    }
+
+    /**
+     * Waits until the response to the oldest outstanding request of this store has arrived or the timeout has elapsed,
+     * so the store can be polled again.
+     *
+     * @param timeoutMillis the maximum time to wait in milliseconds
+     * @throws InterruptedException if the current thread has been interrupted while waiting
+     */
+    public void awaitResponse(final long timeoutMillis) throws InterruptedException {
+        if (done) {
+            return;
+        }
+        if (upload == null) {
+            SmbPipelinedTransfer.awaitResponse(create, timeoutMillis);
+        } else {
+            upload.awaitResponse(timeoutMillis);
+        }
+    }
+
+    /**
+     * @return the time the oldest outstanding request of this store has been sent at, or Long.MAX_VALUE if no request is outstanding
+     */
+    public long getWaitingSince() {
+        if (done) {
+            return Long.MAX_VALUE;
+        }
+        return (upload == null) ? createSentAt : upload.getWaitingSince();
+    }
+
+    /**
+     * @return the normalized name of the file
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return true if the file has been stored, false if it has not been stored, because it already exists and existing files are ignored
+     */
+    public boolean isStored() {
+        return stored;
+    }
+
+    private void complete(final Exception error) {
+        done = true;
+        closeChannel();
+        sharedShare.release(share, error);
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.debug(String.format("Could not close local file channel of '%s'", name), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import org.apache.camel.AsyncCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * This class drives the asynchronous stores of a producer on a single thread, which polls the outstanding responses of
+ * all active stores and waits for the oldest outstanding response if none has arrived, so the routing threads do not block while the files are written.
+ * Stores of the same target file are serialized, so their writes do not interleave, and synchronous writes of a target can be serialized with them.
+ * The callbacks of asynchronously completed stores are done, and the stores waiting for their target are started, on the given completion executor,
+ * so neither the routing of an exchange nor a store waiting for a disk share holds up the thread which completes the active stores.
+ *
+ * @since 10/16/2026
+ */
+public class SmbAsyncUploader implements Runnable, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SmbAsyncUploader.class);
+    private static final long IDLE_WAIT_MILLIS = 100;
+    // Bounds the wait for a single response, so the stores which are started meanwhile are picked up in time
+    private static final long RESPONSE_WAIT_MILLIS = 10;
+    private final ExecutorService completionExecutor;
+    private final LinkedBlockingQueue<PendingStore> started = new LinkedBlockingQueue<>();
+    private final List<PendingStore> active = new ArrayList<>();
+    private final Map<String, Deque<PendingStore>> waitingByTarget = new HashMap<>();
+    private volatile boolean closed = false;
+
+    /**
+     * @param completionExecutor the executor to complete the callbacks and to start the waiting stores on
+     */
+    public SmbAsyncUploader(final ExecutorService completionExecutor) {
+        this.completionExecutor = Objects.requireNonNull(completionExecutor, "Cannot create uploader with a null completion executor");
+    }
+
+    /**
+     * Submits a store, which is started immediately on the calling thread, unless the target is still in use by a preceding store or write,
+     * in which case it is started on the completion executor after the preceding one is complete.
+     *
+     * @param target     the name of the target file
+     * @param starter    starts the store, or returns null if there is nothing to store
+     * @param completion receives the started store, or null if there was nothing to store, and the failure, or null if the store succeeded,
+     *                   before the callback is done
+     * @param callback   the callback of the exchange
+     * @return true if the store has been completed synchronously, false if the callback will be done asynchronously
+     */
+    public boolean submit(final String target,
+                          final Callable<SmbAsyncFileStore> starter,
+                          final BiConsumer<SmbAsyncFileStore, Exception> completion,
+                          final AsyncCallback callback) {
+        final PendingStore pending = new PendingStore(target, starter, completion, callback);
+        final boolean rejected;
+        synchronized (waitingByTarget) {
+            rejected = closed;
+            if (!rejected) {
+                final Deque<PendingStore> waiting = waitingByTarget.get(target);
+                if (waiting != null) {
+                    waiting.addLast(pending);
+                    return false;
+                }
+                waitingByTarget.put(target, new ArrayDeque<>());
+            }
+        }
+        if (rejected) {
+            // The store never got the target, so it must not give it back
+            notifyCompletion(pending, new IllegalStateException(String.format("Cannot store '%s', because the producer has been stopped", target)));
+            pending.callback.done(true);
+            return true;
+        }
+        return start(pending, true);
+    }
+
+    /**
+     * Runs a synchronous write of the target once the preceding stores of the target are complete,
+     * whereby the stores submitted meanwhile are started after the write.
+     *
+     * @param target the name of the target file
+     * @param write  the write to run on the calling thread
+     * @param <T>    the type of the result of the write
+     * @return the result of the write
+     * @throws Exception if the write failed or the calling thread has been interrupted while waiting for the target
+     */
+    public <T> T runExclusively(final String target,
+                                final Callable<T> write) throws Exception {
+        final PendingStore reservation = new PendingStore(target);
+        synchronized (waitingByTarget) {
+            final Deque<PendingStore> waiting = waitingByTarget.get(target);
+            if (waiting != null) {
+                waiting.addLast(reservation);
+            } else {
+                waitingByTarget.put(target, new ArrayDeque<>());
+                reservation.turn.complete(null);
+            }
+        }
+        try {
+            reservation.turn.get();
+        } catch (InterruptedException e) {
+            // A cancelled reservation is skipped when the target is given back, otherwise the target has been given to it meanwhile
+            if (!reservation.turn.cancel(false)) {
+                releaseTarget(target);
+            }
+            throw e;
+        }
+        try {
+            return write.call();
+        } finally {
+            releaseTarget(target);
+        }
+    }
+
+    /**
+     * Polls the active stores until this uploader gets closed and all stores are complete.
+     */
+    @Override
+    public void run() {
+        while (!closed || !active.isEmpty() || !started.isEmpty() || hasWaiting()) {
+            try {
+                if (active.isEmpty()) {
+                    final PendingStore pending = started.poll(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (pending != null) {
+                        active.add(pending);
+                    }
+                }
+                started.drainTo(active);
+                if (!pollActive()) {
+                    awaitOldestResponse();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abortAll(new IllegalStateException("The producer has been stopped before the file was stored"));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops accepting new stores. The active and waiting stores are still completed.
+     */
+    @Override
+    public void close() {
+        synchronized (waitingByTarget) {
+            closed = true;
+        }
+    }
+
+    private boolean pollActive() {
+        boolean progressed = false;
+        final Iterator<PendingStore> iterator = active.iterator();
+        while (iterator.hasNext()) {
+            final PendingStore pending = iterator.next();
+            Exception error = null;
+            try {
+                if (!pending.store.poll()) {
+                    continue;
+                }
+            } catch (Exception e) {
+                pending.store.abort(e);
+                error = e;
+            }
+            iterator.remove();
+            progressed = true;
+            final Exception failure = error;
+            execute(() -> complete(pending, failure, false));
+        }
+        return progressed;
+    }
+
+    /**
+     * Waits for the response to the oldest request of all active stores, which is the one most likely to arrive next.
+     */
+    private void awaitOldestResponse() throws InterruptedException {
+        SmbAsyncFileStore oldest = null;
+        for (final PendingStore pending : active) {
+            if (oldest == null || pending.store.getWaitingSince() < oldest.getWaitingSince()) {
+                oldest = pending.store;
+            }
+        }
+        if (oldest != null) {
+            oldest.awaitResponse(RESPONSE_WAIT_MILLIS);
+        }
+    }
+
+    private void abortAll(final Exception error) {
+        final List<PendingStore> waiting = new ArrayList<>();
+        synchronized (waitingByTarget) {
+            waitingByTarget.values().forEach(waiting::addAll);
+            waitingByTarget.clear();
+        }
+        started.drainTo(active);
+        for (final PendingStore pending : active) {
+            pending.store.abort(error);
+            complete(pending, error, false);
+        }
+        active.clear();
+        for (final PendingStore pending : waiting) {
+            if (pending.turn != null) {
+                pending.turn.complete(null);
+            } else {
+                complete(pending, error, false);
+            }
+        }
+    }
+
+    private boolean hasWaiting() {
+        synchronized (waitingByTarget) {
+            return !waitingByTarget.isEmpty();
+        }
+    }
+
+    /**
+     * @param pending  the store to start
+     * @param doneSync true if the store is started on the calling thread of the submit
+     * @return true if the store has been completed already, false if it is active
+     */
+    private boolean start(final PendingStore pending,
+                          final boolean doneSync) {
+        try {
+            pending.store = pending.starter.call();
+        } catch (Exception e) {
+            complete(pending, e, doneSync);
+            return true;
+        }
+        if (pending.store == null) {
+            complete(pending, null, doneSync);
+            return true;
+        }
+        started.add(pending);
+        return false;
+    }
+
+    private void complete(final PendingStore pending,
+                          final Exception error,
+                          final boolean doneSync) {
+        notifyCompletion(pending, error);
+        releaseTarget(pending.target);
+        pending.callback.done(doneSync);
+    }
+
+    private void notifyCompletion(final PendingStore pending,
+                                  final Exception error) {
+        try {
+            pending.completion.accept(pending.store, error);
+        } catch (Exception e) {
+            LOG.warn(String.format("Completing the store of '%s' failed, due to '%s'", pending.target, e.getMessage()));
+        }
+    }
+
+    /**
+     * Gives the target to the next waiting store or write, whereby the target stays in use until that one is complete,
+     * otherwise the target is free again.
+     *
+     * @param target the name of the target file
+     */
+    private void releaseTarget(final String target) {
+        while (true) {
+            final PendingStore next;
+            synchronized (waitingByTarget) {
+                final Deque<PendingStore> waiting = waitingByTarget.get(target);
+                next = (waiting != null) ? waiting.pollFirst() : null;
+                if (waiting != null && next == null) {
+                    waitingByTarget.remove(target);
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            if (next.turn == null) {
+                execute(() -> start(next, false));
+                return;
+            }
+            if (next.turn.complete(null)) {
+                return;
+            }
+        }
+    }
+
+    private void execute(final Runnable task) {
+        try {
+            completionExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Completion executor rejected the task, therefore it is run on the current thread", e);
+            task.run();
+        }
+    }
+
+    /**
+     * A submitted store together with the callback of its exchange, or the reservation of a target for a synchronous write.
+     */
+    private static final class PendingStore {
+
+        private final String target;
+        private final Callable<SmbAsyncFileStore> starter;
+        private final BiConsumer<SmbAsyncFileStore, Exception> completion;
+        private final AsyncCallback callback;
+        private final CompletableFuture<Void> turn;
+        private SmbAsyncFileStore store;
+
+        private PendingStore(final String target,
+                             final Callable<SmbAsyncFileStore> starter,
+                             final BiConsumer<SmbAsyncFileStore, Exception> completion,
+                             final AsyncCallback callback) {
+            this.target = target;
+            this.starter = starter;
+            this.completion = completion;
+            this.callback = callback;
+            this.turn = null;
+        }
+
+        private PendingStore(final String target) {
+            this.target = target;
+            this.starter = null;
+            this.completion = null;
+            this.callback = null;
+            this.turn = new CompletableFuture<>();
+        }
+    }
+}
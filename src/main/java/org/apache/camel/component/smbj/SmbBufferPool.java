@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class keeps idle transfer buffers for reuse, so transfers do not allocate a new buffer per chunk.
+ * The buffers are pooled by their exact size, which is derived from the negotiated and configured chunk sizes and therefore
+ * takes only a few distinct values. Released buffers are dropped if the pool already holds the maximum number of bytes.
+ *
+ * @since 10/16/2026
+ */
+public class SmbBufferPool {
+
+    private final long maxPooledBytes;
+    private final Map<Integer, Deque<byte[]>> buffersBySize = new HashMap<>();
+    private long pooledBytes = 0;
+
+    /**
+     * @param maxPooledBytes the maximum number of bytes of idle buffers kept for reuse, whereby a value <= 0 disables pooling
+     */
+    public SmbBufferPool(final long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    /**
+     * @param size the exact size of the buffer
+     * @return an idle buffer of the given size, or a newly allocated one if there is none, whose content is undefined
+     */
+    public byte[] acquire(final int size) {
+        synchronized (buffersBySize) {
+            final Deque<byte[]> buffers = buffersBySize.get(size);
+            final byte[] buffer = (buffers != null) ? buffers.pollFirst() : null;
+            if (buffer != null) {
+                pooledBytes -= buffer.length;
+                return buffer;
+            }
+        }
+        return new byte[size];
+    }
+
+    /**
+     * Gives a buffer back for reuse. The caller must not use the buffer anymore.
+     *
+     * @param buffer the buffer which has been acquired from this pool
+     */
+    public void release(final byte[] buffer) {
+        if (buffer == null) {
+            return;
+        }
+        synchronized (buffersBySize) {
+            if (pooledBytes + buffer.length > maxPooledBytes) {
+                return;
+            }
+            buffersBySize.computeIfAbsent(buffer.length, size -> new ArrayDeque<>()).addFirst(buffer);
+            pooledBytes += buffer.length;
+        }
+    }
+
+    /**
+     * @return the number of bytes of idle buffers
+     */
+    public long getPooledBytes() {
+        synchronized (buffersBySize) {
+            return pooledBytes;
+        }
+    }
+
+    /**
+     * Drops all idle buffers.
+     */
+    public void clear() {
+        synchronized (buffersBySize) {
+            buffersBySize.clear();
+            pooledBytes = 0;
+        }
+    }
+}
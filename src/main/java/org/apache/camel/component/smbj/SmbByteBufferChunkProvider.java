@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.smbj.io.ByteChunkProvider;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * This class is a {@link ByteChunkProvider} backed by a {@link ByteBuffer}, so heap, direct and memory mapped buffers
+ * can be written to a remote file without copying them into an intermediate array first.
+ * The content of a heap buffer is written into the request directly, the content of other buffers is copied through
+ * a pooled staging array, instead of a newly allocated array per request.
+ *
+ * @since 10/16/2026
+ */
+public class SmbByteBufferChunkProvider extends ByteChunkProvider {
+
+    private final ByteBuffer data;
+    private final SmbBufferPool bufferPool;
+
+    /**
+     * @param data       the buffer holding the bytes between its position and limit, which is consumed by this provider
+     * @param fileOffset the offset in the remote file the bytes are written at
+     * @param bufferPool the pool to acquire the staging arrays from
+     */
+    public SmbByteBufferChunkProvider(final ByteBuffer data,
+                                      final long fileOffset,
+                                      final SmbBufferPool bufferPool) {
+        this.data = Objects.requireNonNull(data, "Cannot provide chunks of a null buffer");
+        this.bufferPool = Objects.requireNonNull(bufferPool, "Cannot provide chunks with a null buffer pool");
+        this.offset = fileOffset;
+    }
+
+    /**
+     * @return the backing buffer
+     */
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return data.hasRemaining();
+    }
+
+    @Override
+    protected int getChunk(final byte[] chunk) {
+        final int length = Math.min(chunk.length, data.remaining());
+        data.get(chunk, 0, length);
+        return length;
+    }
+
+    @Override
+    public void writeChunk(final Buffer<?> buffer) {
+        writeChunks(buffer, 1);
+    }
+
+    @Override
+    public void writeChunks(final Buffer<?> buffer,
+                            final int chunks) {
+        final int length = (int) Math.min((long) chunks * CHUNK_SIZE, data.remaining());
+        if (data.hasArray()) {
+            buffer.putRawBytes(data.array(), data.arrayOffset() + data.position(), length);
+            data.position(data.position() + length);
+        } else {
+            final byte[] staging = bufferPool.acquire(CHUNK_SIZE);
+            try {
+                int remaining = length;
+                while (remaining > 0) {
+                    final int part = Math.min(staging.length, remaining);
+                    data.get(staging, 0, part);
+                    buffer.putRawBytes(staging, 0, part);
+                    remaining -= part;
+                }
+            } finally {
+                bufferPool.release(staging);
+            }
+        }
+        offset += length;
+    }
+
+    @Override
+    public int bytesLeft() {
+        return data.remaining();
+    }
+}
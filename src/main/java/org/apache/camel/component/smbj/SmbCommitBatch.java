@@ -0,0 +1,297 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import org.apache.camel.spi.ExceptionHandler;
+import org.apache.camel.spi.IdempotentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class queues the moves and deletes of processed files, so they are committed in pipelined batches over a single
+ * disk share instead of one by one. The queue is flushed by the consumer at the begin and end of each poll, and by the
+ * process strategy when it reaches its maximum size. A file which could not be committed is reported on its own,
+ * because the exchange which processed it is already done.
+ * A queued file stays in the in-progress repository until it has been committed, so it is not picked up again by a poll
+ * which lists it before the flush, and the read lock of the file is released after it has been committed as well.
+ *
+ * @since 10/16/2026
+ */
+public class SmbCommitBatch {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SmbCommitBatch.class);
+    private final int maxSize;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Set<String> queuedInProgress = ConcurrentHashMap.newKeySet();
+    private volatile InProgressRepository inProgressRepository;
+    private volatile ExceptionHandler exceptionHandler;
+    private boolean closed = true;
+
+    /**
+     * @param maxSize the number of queued entries which causes a flush
+     */
+    public SmbCommitBatch(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Queues the move of a processed file.
+     *
+     * @param from        the name of the processed file
+     * @param to          the name to move the processed file to
+     * @param inProgress  the key of the processed file in the in-progress repository, which is only removed once the file has been committed
+     * @param onCommitted called once the file has been committed or failed to, e.g. to release the read lock of the file
+     * @return true if the queue has reached its maximum size or is closed and must be flushed, false otherwise
+     */
+    public boolean addRename(final String from,
+                             final String to,
+                             final String inProgress,
+                             final OnCommitted onCommitted) {
+        return add(new Entry(SmbFileOperations.normalizeFileNameOrPath(Objects.requireNonNull(from, "Cannot rename a null file")),
+                             SmbFileOperations.normalizeFileNameOrPath(Objects.requireNonNull(to, "Cannot rename to a null file")),
+                             inProgress,
+                             onCommitted));
+    }
+
+    /**
+     * Queues the deletion of a processed file.
+     *
+     * @param name        the name of the processed file
+     * @param inProgress  the key of the processed file in the in-progress repository, which is only removed once the file has been committed
+     * @param onCommitted called once the file has been committed or failed to, e.g. to release the read lock of the file
+     * @return true if the queue has reached its maximum size or is closed and must be flushed, false otherwise
+     */
+    public boolean addDelete(final String name,
+                             final String inProgress,
+                             final OnCommitted onCommitted) {
+        return add(new Entry(SmbFileOperations.normalizeFileNameOrPath(Objects.requireNonNull(name, "Cannot delete a null file")), null, inProgress, onCommitted));
+    }
+
+    /**
+     * Wraps the in-progress repository of the endpoint, so the removals of the queued files are deferred until they have been committed.
+     *
+     * @param repository the in-progress repository of the endpoint
+     * @return the wrapped in-progress repository
+     */
+    public IdempotentRepository<String> wrapInProgressRepository(final IdempotentRepository<String> repository) {
+        InProgressRepository wrapped = inProgressRepository;
+        if (wrapped == null || wrapped.delegate != repository) {
+            wrapped = new InProgressRepository(repository);
+            inProgressRepository = wrapped;
+        }
+        return wrapped;
+    }
+
+    /**
+     * Commits all queued entries and reports the ones which failed to the exception handler.
+     *
+     * @param operations the operations to commit the entries with
+     */
+    public void flush(final SmbFileOperations operations) {
+        final List<Entry> batch;
+        synchronized (entries) {
+            if (entries.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(entries);
+            entries.clear();
+        }
+        LOG.debug(String.format("Committing '%d' processed files", batch.size()));
+        try {
+            final Map<Entry, Exception> failures = operations.commitBatch(batch);
+            failures.forEach((entry, error) -> report(entry.isDelete()
+                                                              ? String.format("Cannot delete processed file '%s'", entry.getFrom())
+                                                              : String.format("Cannot move processed file '%s' to '%s'", entry.getFrom(), entry.getTo()),
+                                                      error));
+        } finally {
+            // A file which failed is released as well, so it is picked up again as it would be without batching
+            batch.forEach(this::release);
+        }
+    }
+
+    /**
+     * Starts queueing entries, which is done when the consumer starts.
+     *
+     * @param exceptionHandler the handler to report the files which could not be committed to, or null to log them
+     */
+    public void open(final ExceptionHandler exceptionHandler) {
+        this.exceptionHandler = exceptionHandler;
+        synchronized (entries) {
+            closed = false;
+        }
+    }
+
+    /**
+     * Stops queueing entries and commits the queued ones, which is done when the consumer stops.
+     * The exchanges which are still in flight then commit their files right away.
+     *
+     * @param operations the operations to commit the queued entries with
+     */
+    public void close(final SmbFileOperations operations) {
+        synchronized (entries) {
+            closed = true;
+        }
+        flush(operations);
+    }
+
+    private boolean add(final Entry entry) {
+        if (entry.inProgress != null) {
+            queuedInProgress.add(entry.inProgress);
+        }
+        synchronized (entries) {
+            entries.add(entry);
+            return closed || entries.size() >= maxSize;
+        }
+    }
+
+    private void release(final Entry entry) {
+        try {
+            if (entry.onCommitted != null) {
+                entry.onCommitted.committed();
+            }
+        } catch (Exception e) {
+            report(String.format("Cannot release processed file '%s'", entry.getFrom()), e);
+        } finally {
+            if (entry.inProgress != null) {
+                queuedInProgress.remove(entry.inProgress);
+                final InProgressRepository repository = inProgressRepository;
+                if (repository != null) {
+                    repository.delegate.remove(entry.inProgress);
+                }
+            }
+        }
+    }
+
+    private void report(final String message,
+                        final Exception error) {
+        final ExceptionHandler handler = exceptionHandler;
+        if (handler != null) {
+            handler.handleException(message, error);
+        } else {
+            LOG.warn(message, error);
+        }
+    }
+
+    /**
+     * Called once a queued file has been committed or failed to.
+     */
+    @FunctionalInterface
+    public interface OnCommitted {
+
+        /**
+         * @throws Exception if releasing the resources of the file failed
+         */
+        void committed() throws Exception;
+    }
+
+    /**
+     * The in-progress repository of the endpoint, which defers the removal of the queued files until they have been committed.
+     */
+    private final class InProgressRepository implements IdempotentRepository<String> {
+
+        private final IdempotentRepository<String> delegate;
+
+        private InProgressRepository(final IdempotentRepository<String> delegate) {
+            this.delegate = Objects.requireNonNull(delegate, "Cannot wrap a null in-progress repository");
+        }
+
+        @Override
+        public boolean add(final String key) {
+            return delegate.add(key);
+        }
+
+        @Override
+        public boolean contains(final String key) {
+            return delegate.contains(key);
+        }
+
+        @Override
+        public boolean remove(final String key) {
+            // The file is removed by the flush which commits it
+            return queuedInProgress.contains(key) || delegate.remove(key);
+        }
+
+        @Override
+        public boolean confirm(final String key) {
+            return delegate.confirm(key);
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+        }
+
+        @Override
+        public void start() throws Exception {
+            delegate.start();
+        }
+
+        @Override
+        public void stop() throws Exception {
+            delegate.stop();
+        }
+    }
+
+    /**
+     * A queued move or deletion of a processed file.
+     */
+    public static final class Entry {
+
+        private final String from;
+        private final String to;
+        private final String inProgress;
+        private final OnCommitted onCommitted;
+
+        private Entry(final String from,
+                      final String to,
+                      final String inProgress,
+                      final OnCommitted onCommitted) {
+            this.from = from;
+            this.to = to;
+            this.inProgress = inProgress;
+            this.onCommitted = onCommitted;
+        }
+
+        /**
+         * @return the normalized name of the processed file
+         */
+        public String getFrom() {
+            return from;
+        }
+
+        /**
+         * @return the normalized name to move the processed file to, or null if it is deleted
+         */
+        public String getTo() {
+            return to;
+        }
+
+        /**
+         * @return true if the processed file is deleted, false if it is moved
+         */
+        public boolean isDelete() {
+            return to == null;
+        }
+    }
+}
@@ -16,10 +16,13 @@
  */
 package org.apache.camel.component.smbj;
 
+import com.hierynomus.smbj.SMBClient;
 import org.apache.camel.component.file.GenericFileComponent;
 import org.apache.camel.component.file.GenericFileEndpoint;
+import org.apache.camel.spi.Metadata;
 
 import java.net.URI;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -30,6 +33,15 @@ import java.util.Map;
  */
 public class SmbComponent extends GenericFileComponent<SmbFile> {
 
+    @Metadata(label = "advanced", defaultValue = "64", description = "The maximum number of authenticated sessions kept open, whereby the least recently used unused sessions get closed first")
+    private int maxSessions = 64;
+    @Metadata(label = "advanced", defaultValue = "67108864", description = "The maximum number of bytes of idle transfer buffers kept for reuse by all endpoints, whereby a value <= 0 disables the reuse")
+    private long bufferPoolSize = 64L * 1024 * 1024;
+
+    private final Map<String, SMBClient> clients = new HashMap<>();
+    private SmbSessionRegistry sessionRegistry;
+    private SmbBufferPool bufferPool;
+
     @Override
     protected SmbEndpoint buildFileEndpoint(String uri,
                                             String remaining,
@@ -44,6 +56,77 @@ public class SmbComponent extends GenericFileComponent<SmbFile> {
         // Nothing to do for now
     }
 
+    /**
+     * Gets the smb client for the given configuration. Configurations resulting in the same smb config share the same client,
+     * and therefore the same connections to a server.
+     *
+     * @param configuration the configuration to get the client for
+     * @return the shared smb client
+     */
+    public synchronized SMBClient getClient(final SmbConfiguration configuration) {
+        return clients.computeIfAbsent(configuration.getSmbConfigKey(), key -> {
+            log.debug(String.format("Creating smb client for config: [%s]", key));
+            return new SMBClient(configuration.getSmbConfig());
+        });
+    }
+
+    /**
+     * Gets the registry of the sessions shared by all endpoints of this component.
+     *
+     * @return the session registry
+     */
+    public synchronized SmbSessionRegistry getSessionRegistry() {
+        if (sessionRegistry == null) {
+            sessionRegistry = new SmbSessionRegistry(maxSessions);
+        }
+        return sessionRegistry;
+    }
+
+    /**
+     * Gets the pool of the transfer buffers shared by all endpoints of this component.
+     *
+     * @return the buffer pool
+     */
+    public synchronized SmbBufferPool getBufferPool() {
+        if (bufferPool == null) {
+            bufferPool = new SmbBufferPool(bufferPoolSize);
+        }
+        return bufferPool;
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        synchronized (this) {
+            if (sessionRegistry != null) {
+                sessionRegistry.close();
+                sessionRegistry = null;
+            }
+            if (bufferPool != null) {
+                bufferPool.clear();
+                bufferPool = null;
+            }
+            clients.values().forEach(SMBClient::close);
+            clients.clear();
+        }
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    public long getBufferPoolSize() {
+        return bufferPoolSize;
+    }
+
+    public void setBufferPoolSize(long bufferPoolSize) {
+        this.bufferPoolSize = bufferPoolSize;
+    }
+
     private String fixSpaces(String input) {
         return input.replace(" ", "%20");
     }
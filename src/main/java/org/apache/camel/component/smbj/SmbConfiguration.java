@@ -82,6 +82,22 @@ public class SmbConfiguration extends GenericFileConfiguration {
     private Integer socketTimeout = 60000;
     @UriParam(defaultValue = "60000", defaultValueNote = "Default transaction timeout is 60000ms", description = "The transaction timeout in milliseconds", javaType = "java.lang.Integer")
     private Integer transactTimeout = 60000;
+    @UriParam(defaultValue = "0", defaultValueNote = "No idle disk shares are kept open per default", description = "The minimum number of idle disk shares kept open by the pool", javaType = "java.lang.Integer")
+    private Integer poolMinIdle = 0;
+    @UriParam(defaultValue = "8", defaultValueNote = "At most 8 disk shares are open at the same time per default", description = "The maximum number of disk shares the pool opens at the same time. It must leave room for the short file operations beside the long-lived holders of a disk share, which are the directory watcher, stream downloads, lazy directory enumerations, exclusive read locks and the asynchronous stores of a producer, which share a single disk share. A consumer whose watcher, read locks and streamed downloads leave no room does not start", javaType = "java.lang.Integer")
+    private Integer poolMaxTotal = 8;
+    @UriParam(defaultValue = "60000", defaultValueNote = "Idle disk shares are closed after 60000ms per default", description = "The time in milliseconds after which an idle disk share gets closed", javaType = "java.lang.Integer")
+    private Integer poolIdleTimeout = 60000;
+    @UriParam(defaultValue = "60000", defaultValueNote = "Default wait time for a free disk share is 60000ms", description = "The time in milliseconds to wait for a free disk share when the pool is exhausted", javaType = "java.lang.Integer")
+    private Integer poolMaxWait = 60000;
+    @UriParam(description = "The size in bytes of the chunks a download to the localWorkDirectory is split into, limited by the max read size negotiated with the server", javaType = "java.lang.Integer")
+    private Integer downloadChunkSize;
+    @UriParam(defaultValue = "4", defaultValueNote = "4 read requests are kept in flight per default", description = "The number of read requests kept in flight while downloading to the localWorkDirectory", javaType = "java.lang.Integer")
+    private Integer downloadPipelineDepth = 4;
+    @UriParam(description = "The size in bytes of the chunks an upload is split into, limited by the max write size negotiated with the server", javaType = "java.lang.Integer")
+    private Integer uploadChunkSize;
+    @UriParam(defaultValue = "4", defaultValueNote = "4 write requests are kept in flight per default", description = "The number of write requests kept in flight while uploading", javaType = "java.lang.Integer")
+    private Integer uploadPipelineDepth = 4;
 
     public SmbConfiguration(final URI uri) {
         this.builder = SmbConfig.builder();
@@ -139,6 +155,27 @@ public class SmbConfiguration extends GenericFileConfiguration {
         return builder.build();
     }
 
+    /**
+     * Creates the key which identifies the smb config created by {@link #getSmbConfig()}, so that configurations
+     * resulting in the same smb config can share the same smb client.
+     *
+     * @return the key of the smb config
+     */
+    public String getSmbConfigKey() {
+        return String.join("|",
+                           Arrays.toString(resolveSmbDialectsFromVersions()),
+                           String.valueOf(dfs),
+                           String.valueOf(multiProtocol),
+                           String.valueOf(signing),
+                           String.valueOf(Optional.ofNullable(readBufferSize).orElse(bufferSize)),
+                           String.valueOf(Optional.ofNullable(writeBufferSize).orElse(bufferSize)),
+                           String.valueOf(Optional.ofNullable(readTimeout).orElse(timeout)),
+                           String.valueOf(Optional.ofNullable(writeTimeout).orElse(timeout)),
+                           String.valueOf(transactTimeout),
+                           String.valueOf(socketTimeout),
+                           String.valueOf(uuid));
+    }
+
     public AuthenticationContext createAuthenticationContext() {
         if (!"ntlm".equalsIgnoreCase(authType)) {
             throw new IllegalStateException(String.format("Cannot create AuthenticationContext for currently selected authType: '%s'", authType));
@@ -328,5 +365,69 @@ public class SmbConfiguration extends GenericFileConfiguration {
     public void setTransactTimeout(Integer transactTimeout) {
         this.transactTimeout = transactTimeout;
     }
+
+    public Integer getPoolMinIdle() {
+        return poolMinIdle;
+    }
+
+    public void setPoolMinIdle(Integer poolMinIdle) {
+        this.poolMinIdle = poolMinIdle;
+    }
+
+    public Integer getPoolMaxTotal() {
+        return poolMaxTotal;
+    }
+
+    public void setPoolMaxTotal(Integer poolMaxTotal) {
+        this.poolMaxTotal = poolMaxTotal;
+    }
+
+    public Integer getPoolIdleTimeout() {
+        return poolIdleTimeout;
+    }
+
+    public void setPoolIdleTimeout(Integer poolIdleTimeout) {
+        this.poolIdleTimeout = poolIdleTimeout;
+    }
+
+    public Integer getPoolMaxWait() {
+        return poolMaxWait;
+    }
+
+    public void setPoolMaxWait(Integer poolMaxWait) {
+        this.poolMaxWait = poolMaxWait;
+    }
+
+    public Integer getDownloadChunkSize() {
+        return downloadChunkSize;
+    }
+
+    public void setDownloadChunkSize(Integer downloadChunkSize) {
+        this.downloadChunkSize = downloadChunkSize;
+    }
+
+    public Integer getDownloadPipelineDepth() {
+        return downloadPipelineDepth;
+    }
+
+    public void setDownloadPipelineDepth(Integer downloadPipelineDepth) {
+        this.downloadPipelineDepth = downloadPipelineDepth;
+    }
+
+    public Integer getUploadChunkSize() {
+        return uploadChunkSize;
+    }
+
+    public void setUploadChunkSize(Integer uploadChunkSize) {
+        this.uploadChunkSize = uploadChunkSize;
+    }
+
+    public Integer getUploadPipelineDepth() {
+        return uploadPipelineDepth;
+    }
+
+    public void setUploadPipelineDepth(Integer uploadPipelineDepth) {
+        this.uploadPipelineDepth = uploadPipelineDepth;
+    }
     //</editor-fold>
 }
@@ -16,14 +16,24 @@
  */
 package org.apache.camel.component.smbj;
 
+import org.apache.camel.Exchange;
 import org.apache.camel.Message;
 import org.apache.camel.Processor;
+import org.apache.camel.component.file.FileComponent;
 import org.apache.camel.component.file.GenericFile;
 import org.apache.camel.component.file.GenericFileConsumer;
+import org.apache.camel.component.file.GenericFileOperationFailedException;
 import org.apache.camel.component.file.GenericFileOperations;
+import org.apache.camel.component.smbj.strategy.SmbExclusiveOpenReadLockStrategy;
+import org.apache.camel.support.SynchronizationAdapter;
 import org.apache.camel.util.FileUtil;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 /**
  * This class is the smb consumer implementation.
@@ -33,6 +43,21 @@ import java.util.*;
  */
 public class SmbConsumer extends GenericFileConsumer<SmbFile> {
 
+    private ExecutorService directoryWalker;
+    private SmbDirectoryWatcher directoryWatcher;
+    private ExecutorService directoryWatcherExecutor;
+    private boolean watchedPoll = false;
+    private final Map<String, String> watchedNames = new ConcurrentHashMap<>();
+    private SmbListingCache listingCache;
+    private SmbFileStabilityTracker stabilityTracker;
+    private SmbCommitBatch commitBatch;
+    private SmbDownloadPrefetcher downloadPrefetcher;
+    private ExecutorService downloadPrefetcherExecutor;
+    private ExecutorService workers;
+    private List<Future<Boolean>> dispatchedExchanges;
+    private SmbTopKSelector<SelectableFile> selection;
+    private long currentPoll;
+
     public SmbConsumer(SmbEndpoint endpoint,
                        Processor processor,
                        GenericFileOperations<SmbFile> operations) {
@@ -41,6 +66,254 @@ public class SmbConsumer extends GenericFileConsumer<SmbFile> {
               Objects.requireNonNull(operations, "Cannot create consumer with null operations"));
     }
 
+    @Override
+    protected void doStart() throws Exception {
+        validatePoolSize();
+        super.doStart();
+        final int walkerThreads = getEndpoint().getDirectoryWalkerThreads();
+        if (getEndpoint().isRecursive() && walkerThreads > 1) {
+            directoryWalker = getEndpoint().getCamelContext().getExecutorServiceManager().newFixedThreadPool(this, "SmbDirectoryWalker", walkerThreads);
+        }
+        if (getEndpoint().isReadLockAcrossPolls()) {
+            stabilityTracker = getEndpoint().getStabilityTracker();
+        }
+        // A growing file does not change the change time of its directory, so a cached listing would report a stale size as stable
+        if (getEndpoint().isRecursive() && getEndpoint().getListingCacheSize() > 0 && stabilityTracker == null) {
+            listingCache = new SmbListingCache(getEndpoint().getListingCacheSize(), getEndpoint().getListingCacheRefreshInterval());
+        } else if (getEndpoint().getListingCacheSize() > 0 && stabilityTracker != null) {
+            log.info("The listing cache is disabled, because readLockAcrossPolls needs the current sizes of the files");
+        }
+        if (getEndpoint().getCommitBatchSize() > 0) {
+            commitBatch = getEndpoint().getCommitBatch();
+            commitBatch.open(getExceptionHandler());
+        }
+        if (getEndpoint().getConcurrentConsumers() > 1) {
+            workers = getEndpoint().getCamelContext().getExecutorServiceManager().newFixedThreadPool(this, "SmbConsumerWorker", getEndpoint().getConcurrentConsumers());
+        }
+        if (isPrefetchable()) {
+            final boolean downloadToMemory = Optional.ofNullable(getEndpoint().getLocalWorkDirectory()).orElse("").trim().isEmpty();
+            downloadPrefetcherExecutor = getEndpoint().getCamelContext().getExecutorServiceManager().newFixedThreadPool(this, "SmbDownloadPrefetcher", getEndpoint().getPrefetchCount());
+            downloadPrefetcher = new SmbDownloadPrefetcher((SmbFileOperations) operations,
+                                                           downloadPrefetcherExecutor,
+                                                           getEndpoint().getPrefetchCount(),
+                                                           getEndpoint().getPrefetchByteBudget(),
+                                                           downloadToMemory ? Long.MAX_VALUE : getEndpoint().getDownloadMemoryThreshold());
+            ((SmbFileOperations) operations).setDownloadPrefetcher(downloadPrefetcher);
+        }
+        if (getEndpoint().isWatch()) {
+            directoryWatcher = new SmbDirectoryWatcher(getEndpoint().getDiskSharePool(),
+                                                       SmbFileOperations.normalizeFileNameOrPath(getEndpoint().getConfiguration().getDirectory()),
+                                                       getEndpoint().isRecursive(),
+                                                       getEndpoint().getWatchResyncInterval(),
+                                                       getEndpoint().getConfiguration().getTransactTimeout());
+            directoryWatcherExecutor = getEndpoint().getCamelContext().getExecutorServiceManager().newSingleThreadExecutor(this, "SmbDirectoryWatcher");
+            directoryWatcherExecutor.submit(directoryWatcher);
+        }
+    }
+
+    /**
+     * Validates that the pool leaves room for the short file operations beside the disk shares which are held for a longer time,
+     * which are the directory watcher, and the exclusive read locks or streamed downloads of the exchanges in flight.
+     * The exclusive read locks of the files queued in the commit batch are held until the batch is flushed.
+     * Otherwise the poll would wait for a disk share which is only given back after the poll.
+     *
+     * @throws IllegalArgumentException if poolMaxTotal is too small for the configured holders
+     */
+    private void validatePoolSize() {
+        final SmbEndpoint endpoint = getEndpoint();
+        final boolean exclusiveReadLock = "exclusive".equals(endpoint.getReadLock()) || endpoint.getExclusiveReadLockStrategy() instanceof SmbExclusiveOpenReadLockStrategy;
+        final boolean streamDownload = endpoint.isStreamDownload() && Optional.ofNullable(endpoint.getLocalWorkDirectory()).orElse("").trim().isEmpty();
+        int holders = endpoint.isWatch() ? 1 : 0;
+        if (exclusiveReadLock || streamDownload) {
+            holders += Math.max(1, endpoint.getConcurrentConsumers());
+        }
+        if (exclusiveReadLock && endpoint.getCommitBatchSize() > 0) {
+            holders += endpoint.getCommitBatchSize();
+        }
+        final int poolMaxTotal = endpoint.getConfiguration().getPoolMaxTotal();
+        if (holders >= poolMaxTotal) {
+            throw new IllegalArgumentException(String.format("The poolMaxTotal '%d' must be greater than the '%d' disk shares held by the watcher, the read locks and the streamed downloads (concurrentConsumers=%d, commitBatchSize=%d)",
+                                                             poolMaxTotal, holders, endpoint.getConcurrentConsumers(), endpoint.getCommitBatchSize()));
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        if (workers != null) {
+            // The exchanges handed over by the last poll are processed before the workers end
+            getEndpoint().getCamelContext().getExecutorServiceManager().shutdownGraceful(workers);
+            workers = null;
+        }
+        if (commitBatch != null) {
+            // The exchanges which are still in flight commit their files right away, because the batch is not flushed by polls anymore
+            commitBatch.close((SmbFileOperations) operations);
+            commitBatch = null;
+        }
+        if (downloadPrefetcher != null) {
+            ((SmbFileOperations) operations).setDownloadPrefetcher(null);
+            downloadPrefetcher.clear();
+            getEndpoint().getCamelContext().getExecutorServiceManager().shutdownNow(downloadPrefetcherExecutor);
+            downloadPrefetcher = null;
+            downloadPrefetcherExecutor = null;
+        }
+        if (directoryWalker != null) {
+            getEndpoint().getCamelContext().getExecutorServiceManager().shutdownNow(directoryWalker);
+            directoryWalker = null;
+        }
+        listingCache = null;
+        if (directoryWatcher != null) {
+            directoryWatcher.close();
+            getEndpoint().getCamelContext().getExecutorServiceManager().shutdownNow(directoryWatcherExecutor);
+            directoryWatcher = null;
+            directoryWatcherExecutor = null;
+        }
+    }
+
+    /**
+     * Commits the files which have been processed asynchronously since the last poll, so they are not listed again.
+     */
+    @Override
+    protected boolean prePollCheck() throws Exception {
+        flushCommitBatch();
+        return super.prePollCheck();
+    }
+
+    /**
+     * Commits the files which have been processed by this poll.
+     */
+    @Override
+    protected void postPollCheck(int polledMessages) {
+        super.postPollCheck(polledMessages);
+        flushCommitBatch();
+    }
+
+    /**
+     * Processes the exchanges of a poll. The files are prefetched if configured, and the exchanges are processed by the workers
+     * if concurrent consumers are configured, whereby the poll completes when all exchanges of the batch have been processed.
+     *
+     * @param exchanges the exchanges of the polled files
+     * @return the number of processed exchanges
+     */
+    @Override
+    public int processBatch(Queue<Object> exchanges) {
+        final SmbDownloadPrefetcher prefetcher = downloadPrefetcher;
+        if (prefetcher != null) {
+            beginPrefetch(prefetcher, exchanges);
+        }
+        final List<Future<Boolean>> batch = (workers != null) ? new ArrayList<>() : null;
+        dispatchedExchanges = batch;
+        int answer = 0;
+        try {
+            answer = super.processBatch(exchanges);
+        } finally {
+            dispatchedExchanges = null;
+            if (batch != null) {
+                answer -= awaitWorkers(batch);
+            }
+            if (prefetcher != null) {
+                // The prefetches which have not been retrieved, because their files have been skipped, are dropped
+                prefetcher.clear();
+            }
+            final SmbDirectoryWatcher watcher = directoryWatcher;
+            if (watcher != null) {
+                requeueUnprocessedNames(watcher);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Hands the exchange over to a worker while a batch is processed with concurrent consumers,
+     * so read lock, retrieve, process and commit of the files run in parallel.
+     *
+     * @param exchange the exchange of the polled file
+     * @return true if the exchange has been handed over or processed, false if it has not been started
+     */
+    @Override
+    protected boolean processExchange(final Exchange exchange) {
+        final List<Future<Boolean>> batch = dispatchedExchanges;
+        if (batch == null) {
+            return processPolledExchange(exchange);
+        }
+        batch.add(workers.submit(() -> processPolledExchange(exchange)));
+        return true;
+    }
+
+    /**
+     * Waits until the workers have processed the handed over exchanges.
+     *
+     * @param batch the results of the handed over exchanges
+     * @return the number of exchanges which have not been started, e.g. because the read lock could not be acquired
+     */
+    private int awaitWorkers(final List<Future<Boolean>> batch) {
+        int notStarted = 0;
+        for (final Future<Boolean> result : batch) {
+            try {
+                if (!result.get()) {
+                    notStarted++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return notStarted;
+            } catch (ExecutionException e) {
+                getExceptionHandler().handleException("Error processing file by a worker", e.getCause());
+            }
+        }
+        return notStarted;
+    }
+
+    /**
+     * Starts prefetching the files of the batch before they get processed one by one.
+     *
+     * @param prefetcher the prefetcher
+     * @param exchanges  the exchanges of the polled files
+     */
+    @SuppressWarnings("unchecked")
+    private void beginPrefetch(final SmbDownloadPrefetcher prefetcher,
+                               final Queue<Object> exchanges) {
+        // Files beyond maxMessagesPerPoll are not processed
+        final int limit = (getMaxMessagesPerPoll() > 0) ? Math.min(getMaxMessagesPerPoll(), exchanges.size()) : exchanges.size();
+        final List<String> names = new ArrayList<>(limit);
+        final List<Long> sizes = new ArrayList<>(limit);
+        for (final Object exchange : exchanges) {
+            if (names.size() == limit) {
+                break;
+            }
+            final GenericFile<SmbFile> file = (GenericFile<SmbFile>) ((Exchange) exchange).getProperty(FileComponent.FILE_EXCHANGE_FILE);
+            names.add(file.getAbsoluteFilePath());
+            sizes.add(file.getFileLength());
+        }
+        prefetcher.begin(names, sizes);
+    }
+
+    /**
+     * Answers the question whether the files can be downloaded ahead of their processing, which requires that they are
+     * downloaded into memory and neither locked nor moved before they are retrieved.
+     *
+     * @return true if the files can be prefetched, false otherwise
+     */
+    private boolean isPrefetchable() {
+        final SmbEndpoint smbEndpoint = getEndpoint();
+        final String readLock = smbEndpoint.getReadLock();
+        // Concurrent consumers overlap the downloads with the processing already, and retrieve the files out of order
+        return smbEndpoint.getPrefetchCount() > 0
+                && smbEndpoint.getConcurrentConsumers() <= 1
+                && isRetrieveFile()
+                && !smbEndpoint.isStreamDownload()
+                && (readLock == null || "none".equals(readLock) || "false".equals(readLock))
+                && smbEndpoint.getExclusiveReadLockStrategy() == null
+                && smbEndpoint.getPreMove() == null
+                && (Optional.ofNullable(smbEndpoint.getLocalWorkDirectory()).orElse("").trim().isEmpty() || smbEndpoint.getDownloadMemoryThreshold() > 0);
+    }
+
+    private void flushCommitBatch() {
+        final SmbCommitBatch batch = commitBatch;
+        if (batch != null) {
+            batch.flush((SmbFileOperations) operations);
+        }
+    }
+
     @Override
     protected boolean pollDirectory(String fileName,
                                     List<GenericFile<SmbFile>> fileList,
@@ -48,37 +321,496 @@ public class SmbConsumer extends GenericFileConsumer<SmbFile> {
         log.trace(String.format("Pooling directory with delay '%s' and strategy '%s'", this.getDelay(), this.getPollStrategy().getClass().toString()));
         log.trace(String.format("fileName[%s]", fileName));
 
-        final List<SmbFile> smbFiles = operations.listFiles(fileName);
+        if (stabilityTracker != null) {
+            currentPoll = stabilityTracker.beginPoll();
+        }
+        final SmbDirectoryWatcher watcher = directoryWatcher;
+        if (watcher != null && !watcher.beginResyncIfDue()) {
+            return pollWatchedFiles(watcher, fileName, fileList);
+        }
+        final SmbTopKSelector<SelectableFile> selector = createSelection();
+        selection = selector;
+        try {
+            if (isLazyListing()) {
+                return walkDirectoryLazily(fileName, fileList);
+            }
+            return walkDirectory(listDirectory(fileName), true, fileList, depth);
+        } finally {
+            selection = null;
+            if (selector != null) {
+                // Added even if the walk failed, so the generic consumer removes them from the in progress repository
+                for (final SelectableFile selected : selector.drain()) {
+                    fileList.add(selected.file);
+                    observe(selected.file.getFile());
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the selection of the files to poll, if the poll is limited by maxMessagesPerPoll and the files are going to be sorted.
+     * The files are then selected while they are walked, instead of collecting and sorting all files and dropping most of them afterwards.
+     * The generic consumer sorts by the sorter first and by sortBy afterwards, whereby its sort is stable and the files have been pre sorted
+     * by name if configured, so the selection orders by sortBy, then by the sorter, then by name if pre sorted, and then in walking order.
+     * Without maxMessagesPerPoll being eager, all files would be collected and sorted anyway, therefore the sorter and sortBy are considered.
+     * With maxMessagesPerPoll being eager, the first files in walking order are polled, which is only an order if they are pre sorted
+     * and not walked recursively, because a recursive walk pre sorts each directory on its own.
+     *
+     * @return the selection, or null if the files are collected as they are walked
+     */
+    private SmbTopKSelector<SelectableFile> createSelection() {
+        final SmbEndpoint smbEndpoint = getEndpoint();
+        final boolean eager = isEagerLimitMaxMessagesPerPoll();
+        // Shuffled files are trimmed after they have been shuffled, which cannot be selected upfront
+        if (getMaxMessagesPerPoll() <= 0 || (!eager && smbEndpoint.isShuffle())) {
+            return null;
+        }
+        final Comparator<Exchange> sortBy = smbEndpoint.getSortBy();
+        final Comparator<GenericFile<SmbFile>> sorter = smbEndpoint.getSorter();
+        Comparator<SelectableFile> order = null;
+        if (!eager && sortBy != null) {
+            order = Comparator.comparing(selectable -> selectable.exchange, sortBy);
+        }
+        if (!eager && sorter != null) {
+            final Comparator<SelectableFile> bySorter = Comparator.comparing(selectable -> selectable.file, sorter);
+            order = (order == null) ? bySorter : order.thenComparing(bySorter);
+        }
+        if (smbEndpoint.isPreSort() && !smbEndpoint.isRecursive()) {
+            final Comparator<SelectableFile> byName = Comparator.comparing(selectable -> selectable.file.getFile().getFileNameFull());
+            order = (order == null) ? byName : order.thenComparing(byName);
+        }
+        return (order == null) ? null : new SmbTopKSelector<>(getMaxMessagesPerPoll(), order);
+    }
+
+    /**
+     * Collects a valid file, which is either added to the polled files right away, or offered to the selection.
+     * A file which drops out of the selection is removed from the in progress repository again, because it is not polled.
+     *
+     * @param genericFile the valid file
+     * @param fileList    the list to add the valid files to
+     */
+    private void collect(final GenericFile<SmbFile> genericFile,
+                         final List<GenericFile<SmbFile>> fileList) {
+        final SmbTopKSelector<SelectableFile> selector = selection;
+        if (selector == null) {
+            fileList.add(genericFile);
+            observe(genericFile.getFile());
+            return;
+        }
+        final Exchange exchange = (!isEagerLimitMaxMessagesPerPoll() && getEndpoint().getSortBy() != null) ? createSortableExchange(genericFile) : null;
+        final SelectableFile dropped = selector.offer(new SelectableFile(genericFile, exchange));
+        if (dropped != null) {
+            removeExcessiveInProgressFiles(Collections.singletonList(dropped.file));
+        }
+    }
+
+    /**
+     * Creates the exchange sortBy is evaluated on, the same way as the generic consumer creates the exchange of a polled file.
+     *
+     * @param genericFile the valid file
+     * @return the exchange of the file
+     */
+    private Exchange createSortableExchange(final GenericFile<SmbFile> genericFile) {
+        final Exchange exchange = getEndpoint().createExchange(genericFile);
+        getEndpoint().configureExchange(exchange);
+        getEndpoint().configureMessage(genericFile, exchange.getIn());
+        return exchange;
+    }
+
+    /**
+     * Walks the files of a directory while they are enumerated page by page, so a poll which is limited by maxMessagesPerPoll
+     * stops enumerating the directory as soon as enough files have been collected.
+     *
+     * @param fileName the directory to walk
+     * @param fileList the list to add the valid files to
+     * @return true if more files can be polled, false otherwise
+     */
+    private boolean walkDirectoryLazily(final String fileName,
+                                        final List<GenericFile<SmbFile>> fileList) {
+        try (final SmbDirectoryIterator files = ((SmbFileOperations) operations).iterateFiles(fileName, resolveSearchPattern())) {
+            while (files.hasNext()) {
+                if (!canPollMoreFiles(fileList)) {
+                    return false;
+                }
+                final SmbFile file = files.next();
+                if (file.isDirectory()) {
+                    continue;
+                }
+                final GenericFile<SmbFile> genericFile = asGenericFile(file);
+                // The sibling files are only needed to match a done file, which is never the case here
+                if (isValidFile(genericFile, false, Collections.emptyList())) {
+                    collect(genericFile, fileList);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Answers the question whether the directory can be walked while it is enumerated, which requires that neither the whole listing
+     * is needed upfront to sort it or to match done files, nor sub directories are walked. Pre sorted files can be walked lazily
+     * if they are selected, because the selection orders them by name.
+     *
+     * @return true if the directory can be walked lazily, false otherwise
+     */
+    private boolean isLazyListing() {
+        return !getEndpoint().isRecursive() && (!getEndpoint().isPreSort() || selection != null) && getEndpoint().getDoneFileName() == null;
+    }
 
-        if (getEndpoint().isPreSort()) {
-            Collections.sort(smbFiles, Comparator.comparing(SmbFile::getFileNameFull));
+    /**
+     * Picks up the files reported by the directory watcher, without listing the directory.
+     * Names which cannot be picked up by this poll anymore are given back to the watcher.
+     *
+     * @param watcher  the directory watcher
+     * @param fileName the watched directory
+     * @param fileList the list to add the valid files to
+     * @return true if more files can be polled, false otherwise
+     */
+    private boolean pollWatchedFiles(final SmbDirectoryWatcher watcher,
+                                     final String fileName,
+                                     final List<GenericFile<SmbFile>> fileList) {
+        final String directory = SmbFileOperations.normalizeFileNameOrPath(fileName);
+        // Files of the previous poll which have not been handed to the processing are checked again
+        requeueUnprocessedNames(watcher);
+        final List<String> names = watcher.drainPendingNames();
+        final Map<String, Boolean> validDirectories = new HashMap<>();
+        watchedPoll = true;
+        int i = 0;
+        try {
+            for (; i < names.size(); i++) {
+                if (!canPollMoreFiles(fileList)) {
+                    watcher.requeue(names.subList(i, names.size()));
+                    return false;
+                }
+                final String name = names.get(i);
+                final SmbFile file = ((SmbFileOperations) operations).getFile(directory.isEmpty() ? name : (directory + "\\" + name));
+                // Changes of directories are reported for their files as well if recursive
+                if (file == null || file.isDirectory()) {
+                    continue;
+                }
+                // The directory walk does not step into rejected directories, therefore their files are not picked up either
+                if (getEndpoint().isRecursive() && !isInValidDirectories(directory, name, validDirectories)) {
+                    continue;
+                }
+                final GenericFile<SmbFile> genericFile = asGenericFile(file);
+                if (isValidFile(genericFile, false, Collections.singletonList(file))) {
+                    fileList.add(genericFile);
+                    observe(file);
+                    watchedNames.put(genericFile.getAbsoluteFilePath(), name);
+                } else if (isIncludedByName(file.getFileName())) {
+                    // The file may be in progress or wait for its done file, which is not reported again, therefore it is checked again by the next poll
+                    watcher.requeue(Collections.singletonList(name));
+                }
+            }
+        } catch (RuntimeException e) {
+            watcher.requeue(names.subList(i, names.size()));
+            throw e;
+        } finally {
+            watchedPoll = false;
         }
+        return true;
+    }
 
-        // Walk found files
-        for (final SmbFile file : smbFiles) {
-            if (!canPollMoreFiles(fileList)) {
+    /**
+     * Answers the question whether the sub directories a watched file is located in are valid, the same way
+     * as the directory walk validates the sub directories it steps into.
+     *
+     * @param directory        the watched directory
+     * @param name             the name of the file relative to the watched directory
+     * @param validDirectories the sub directories validated by this poll, by their full name
+     * @return true if all sub directories of the file are valid, false otherwise
+     */
+    private boolean isInValidDirectories(final String directory,
+                                         final String name,
+                                         final Map<String, Boolean> validDirectories) {
+        int separator = name.indexOf('\\');
+        while (separator >= 0) {
+            final String path = directory.isEmpty() ? name.substring(0, separator) : (directory + "\\" + name.substring(0, separator));
+            Boolean valid = validDirectories.get(path);
+            if (valid == null) {
+                final SmbFile subDirectory = ((SmbFileOperations) operations).getFile(path);
+                valid = subDirectory != null
+                        && subDirectory.isDirectory()
+                        && isValidFile(asGenericFile(subDirectory), true, Collections.singletonList(subDirectory));
+                validDirectories.put(path, valid);
+            }
+            if (!valid) {
                 return false;
             }
+            separator = name.indexOf('\\', separator + 1);
+        }
+        return true;
+    }
+
+    /**
+     * Gives the names of the watched files back to the watcher, which have been polled but not handed to the processing,
+     * e.g. because they exceeded maxMessagesPerPoll or the poll failed.
+     *
+     * @param watcher the directory watcher
+     */
+    private void requeueUnprocessedNames(final SmbDirectoryWatcher watcher) {
+        if (watchedNames.isEmpty()) {
+            return;
+        }
+        final List<String> names = new ArrayList<>(watchedNames.values());
+        watchedNames.clear();
+        watcher.requeue(names);
+    }
+
+    /**
+     * Processes the exchange of a polled file, whereby the name of a watched file is given back to the watcher
+     * if its exchange has not been started, e.g. because the read lock has not been granted, or has failed and was rolled back,
+     * because the file is not reported again by the watcher while it stays in place.
+     *
+     * @param exchange the exchange of the polled file
+     * @return true if the exchange has been processed, false if it has not been started
+     */
+    private boolean processPolledExchange(final Exchange exchange) {
+        final SmbDirectoryWatcher watcher = directoryWatcher;
+        final GenericFile<?> file = (GenericFile<?>) exchange.getProperty(FileComponent.FILE_EXCHANGE_FILE);
+        final String name = (watcher != null && file != null) ? watchedNames.remove(file.getAbsoluteFilePath()) : null;
+        if (name != null) {
+            exchange.addOnCompletion(new SynchronizationAdapter() {
+                @Override
+                public void onFailure(final Exchange failed) {
+                    watcher.requeue(Collections.singletonList(name));
+                }
+            });
+        }
+        // The begin and commit of the exchange reuse the disk share held by its read lock or streamed download
+        ((SmbFileOperations) operations).bindExchange(exchange);
+        final boolean started;
+        try {
+            started = super.processExchange(exchange);
+        } finally {
+            ((SmbFileOperations) operations).bindExchange(null);
+        }
+        if (!started && name != null) {
+            watcher.requeue(Collections.singletonList(name));
+        }
+        return started;
+    }
 
-            // Create generic file for file/directory
-            final GenericFile<SmbFile> genericFile = asGenericFile(file);
+    /**
+     * Walks the listed files of a directory and steps into the valid sub directories if recursive.
+     * If a directory walker is configured, then the listings of the upcoming sub directories are fetched concurrently,
+     * but they are still walked in the order of the listing, so the collected files are in the same order as with a sequential walk.
+     * If the listing is a directory snapshot, then entries which are rejected by their name are skipped before a file is created for them.
+     * Sub directories which are not stepped into are skipped, they are never polled as files.
+     *
+     * @param listing  the listed files of the directory
+     * @param fresh    true if the directory has been listed by this poll, false if the listing has been served from the listing cache
+     * @param fileList the list to add the valid files to
+     * @param depth    the depth of the directory
+     * @return true if more files can be polled, false otherwise
+     */
+    private boolean walkDirectory(final List<SmbFile> listing,
+                                  final boolean fresh,
+                                  final List<GenericFile<SmbFile>> fileList,
+                                  final int depth) {
+        // The selection orders by name if the files are pre sorted and not walked recursively
+        final List<SmbFile> smbFiles = (getEndpoint().isPreSort() && (selection == null || getEndpoint().isRecursive())) ? sortByName(listing) : listing;
+        final SmbDirectorySnapshot snapshot = (smbFiles instanceof SmbDirectorySnapshot) ? (SmbDirectorySnapshot) smbFiles : null;
 
-            // If directory, recursive and valid directory, step into it
-            if (file.isDirectory() && endpoint.isRecursive() && isValidFile(genericFile, true, smbFiles)) {
-                int nextDepth = depth++;
-                pollDirectory(file.getFileNameFull(), fileList, nextDepth);
+        // Matching a directory has no side effects, therefore the sub directories to step into are determined upfront
+        final List<Integer> subDirectories = new ArrayList<>();
+        if (endpoint.isRecursive()) {
+            for (int i = 0; i < smbFiles.size(); i++) {
+                final boolean directory = (snapshot != null) ? snapshot.isDirectory(i) : smbFiles.get(i).isDirectory();
+                if (directory && isCandidate(snapshot, i, true) && isValidFile(asGenericFile(smbFiles.get(i)), true, smbFiles)) {
+                    subDirectories.add(i);
+                }
             }
-            // Add file if valid
-            else {
-                if (isValidFile(genericFile, false, smbFiles)) {
-                    fileList.add(genericFile);
+        }
+
+        final ExecutorService walker = directoryWalker;
+        final Deque<Future<SubDirectoryListing>> prefetched = new ArrayDeque<>();
+        final int prefetchLimit = getEndpoint().getDirectoryWalkerThreads() * 2;
+        int nextPrefetch = 0;
+        int nextSubDirectory = 0;
+        try {
+            // Walk found files
+            for (int i = 0; i < smbFiles.size(); i++) {
+                if (!canPollMoreFiles(fileList)) {
+                    return false;
+                }
+
+                while (walker != null && prefetched.size() < prefetchLimit && nextPrefetch < subDirectories.size()) {
+                    final SmbFile subDirectory = smbFiles.get(subDirectories.get(nextPrefetch++));
+                    prefetched.addLast(walker.submit(() -> listSubDirectory(subDirectory, fresh)));
+                }
+
+                // If directory, recursive and valid directory, step into it
+                if (nextSubDirectory < subDirectories.size() && subDirectories.get(nextSubDirectory) == i) {
+                    nextSubDirectory++;
+                    final SubDirectoryListing subListing = (walker != null) ? awaitListing(prefetched.pollFirst()) : listSubDirectory(smbFiles.get(i), fresh);
+                    walkDirectory(subListing.files, subListing.fresh, fileList, depth + 1);
+                }
+                // Add file if valid, whereby directories are never polled as files, the same way as by the lazy walk and the file consumer
+                else if (!((snapshot != null) ? snapshot.isDirectory(i) : smbFiles.get(i).isDirectory()) && isCandidate(snapshot, i, false)) {
+                    final GenericFile<SmbFile> genericFile = asGenericFile(smbFiles.get(i));
+                    if (isValidFile(genericFile, false, smbFiles)) {
+                        collect(genericFile, fileList);
+                    }
                 }
             }
+        } finally {
+            prefetched.forEach(future -> future.cancel(true));
         }
 
         return true;
     }
 
+    /**
+     * Sorts the listed files by their full names, whereby the listing itself is left untouched, because it may be shared by the listing cache.
+     *
+     * @param listing the listed files of the directory
+     * @return the sorted files
+     */
+    private static List<SmbFile> sortByName(final List<SmbFile> listing) {
+        if (listing instanceof SmbDirectorySnapshot) {
+            return ((SmbDirectorySnapshot) listing).sortedByName();
+        }
+        final List<SmbFile> sorted = new ArrayList<>(listing);
+        sorted.sort(Comparator.comparing(SmbFile::getFileNameFull));
+        return sorted;
+    }
+
+    /**
+     * Answers the question whether an entry of a directory snapshot can be valid, by only looking at its name.
+     * Only entries are rejected which the generic consumer rejects anyway, which are names starting with a dot, lock files,
+     * and files which are excluded or not included.
+     *
+     * @param snapshot  the directory snapshot, or null if the listing is not a snapshot
+     * @param index     the index of the entry
+     * @param directory true if the entry is matched as a directory, false if it is matched as a file
+     * @return true if the entry needs to be validated, false if it is rejected
+     */
+    private boolean isCandidate(final SmbDirectorySnapshot snapshot,
+                                final int index,
+                                final boolean directory) {
+        if (snapshot == null) {
+            return true;
+        }
+        if (snapshot.fileNameStartsWith(index, ".") || snapshot.fileNameEndsWith(index, FileComponent.DEFAULT_LOCK_FILE_POSTFIX)) {
+            return false;
+        }
+        if (directory || (getEndpoint().getExcludePattern() == null && getEndpoint().getIncludePattern() == null)) {
+            return true;
+        }
+        return matchesNamePatterns(snapshot.getFileNameSequence(index));
+    }
+
+    /**
+     * Answers the question whether a file can be valid by its name, which the generic consumer rejects if it starts with a dot,
+     * is a lock file, or is excluded or not included.
+     *
+     * @param fileName the name of the file without any path
+     * @return true if the name of the file can be valid, false if it is rejected
+     */
+    private boolean isIncludedByName(final String fileName) {
+        return !fileName.startsWith(".") && !fileName.endsWith(FileComponent.DEFAULT_LOCK_FILE_POSTFIX) && matchesNamePatterns(fileName);
+    }
+
+    /**
+     * @param name the name of a file without any path
+     * @return true if the name is neither excluded nor not included, false otherwise
+     */
+    private boolean matchesNamePatterns(final CharSequence name) {
+        final Pattern exclude = getEndpoint().getExcludePattern();
+        final Pattern include = getEndpoint().getIncludePattern();
+        return (exclude == null || !exclude.matcher(name).matches()) && (include == null || include.matcher(name).matches());
+    }
+
+    /**
+     * Records the state of a candidate file, so the changed read lock can decide whether it is stable.
+     *
+     * @param file the candidate file
+     */
+    private void observe(final SmbFile file) {
+        if (stabilityTracker != null) {
+            stabilityTracker.observe(file, currentPoll);
+        }
+    }
+
+    private List<SmbFile> listDirectory(final String fileName) {
+        final String searchPattern = resolveSearchPattern();
+        return (searchPattern == null) ? operations.listFiles(fileName) : ((SmbFileOperations) operations).listFiles(fileName, searchPattern);
+    }
+
+    /**
+     * Lists a sub directory, whereby the listing is served from the listing cache if the change time of the
+     * sub directory has not changed since it has been cached.
+     * The change time is only taken from the parent listing if the parent has been listed by this poll. A cached parent listing
+     * holds the change times of its sub directories from when it has been cached, which do not change when files are added below them,
+     * therefore the current change time of the sub directory is queried instead.
+     *
+     * @param subDirectory the sub directory as listed in its parent directory
+     * @param parentFresh  true if the parent directory has been listed by this poll, false if its listing has been served from the listing cache
+     * @return the files of the sub directory
+     */
+    private SubDirectoryListing listSubDirectory(final SmbFile subDirectory,
+                                                 final boolean parentFresh) {
+        final SmbListingCache cache = listingCache;
+        final String path = subDirectory.getFileNameFull();
+        if (cache == null) {
+            return new SubDirectoryListing(listDirectory(path), true);
+        }
+        final long changeTime;
+        if (parentFresh) {
+            changeTime = subDirectory.getLastModified();
+        } else {
+            final SmbFile current = ((SmbFileOperations) operations).getFile(path);
+            if (current == null || !current.isDirectory()) {
+                // The sub directory is gone meanwhile
+                return new SubDirectoryListing(Collections.emptyList(), true);
+            }
+            changeTime = current.getLastModified();
+        }
+        final List<SmbFile> cached = cache.get(path, changeTime);
+        if (cached != null) {
+            return new SubDirectoryListing(cached, false);
+        }
+        final List<SmbFile> listing = listDirectory(path);
+        cache.put(path, changeTime, listing);
+        return new SubDirectoryListing(listing, true);
+    }
+
+    private SubDirectoryListing awaitListing(final Future<SubDirectoryListing> listing) {
+        try {
+            return listing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenericFileOperationFailedException("Interrupted while waiting for a directory listing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new GenericFileOperationFailedException("Could not list directory", e.getCause());
+        }
+    }
+
+    /**
+     * Resolves the search pattern the server filters the directory entries with. The filters are still applied on the client,
+     * the search pattern only avoids transferring entries which would be rejected anyway.
+     * A recursive poll needs all directories and a done file needs its sibling files, therefore they are never filtered by the server.
+     *
+     * @return the search pattern, or null if all entries must be listed
+     */
+    private String resolveSearchPattern() {
+        final SmbEndpoint smbEndpoint = getEndpoint();
+        if (!smbEndpoint.isServerSideFiltering() || smbEndpoint.isRecursive() || smbEndpoint.getDoneFileName() != null) {
+            return null;
+        }
+        if (smbEndpoint.getFileName() != null) {
+            return SmbSearchPatternUtils.fromFileName(evaluateFileExpression());
+        }
+        if (smbEndpoint.getAntInclude() != null) {
+            return SmbSearchPatternUtils.fromAntInclude(smbEndpoint.getAntInclude());
+        }
+        return SmbSearchPatternUtils.fromRegex(smbEndpoint.getInclude());
+    }
+
     @Override
     protected void updateFileHeaders(GenericFile<SmbFile> file,
                                      Message message) {
@@ -106,12 +838,48 @@ public class SmbConsumer extends GenericFileConsumer<SmbFile> {
                                 String doneFileName,
                                 List<SmbFile> files) {
         String onlyName = FileUtil.stripPath(doneFileName);
-        final boolean result = files.stream().anyMatch(smbFile -> smbFile.getFileName().equals(onlyName));
+        boolean result = (files instanceof SmbDirectorySnapshot)
+                ? ((SmbDirectorySnapshot) files).containsFileName(onlyName)
+                : files.stream().anyMatch(smbFile -> smbFile.getFileName().equals(onlyName));
+        // A watched file has been picked up without its siblings, therefore the done file must be looked up
+        if (!result && watchedPoll) {
+            result = operations.existsFile(doneFileName);
+        }
 
         log.trace(String.format("Done file: %s does not exist", doneFileName));
         return result;
     }
 
+    /**
+     * The listing of a sub directory, and whether it has been listed by this poll, so the change times of its entries are current.
+     */
+    private static final class SubDirectoryListing {
+
+        private final List<SmbFile> files;
+        private final boolean fresh;
+
+        private SubDirectoryListing(final List<SmbFile> files,
+                                    final boolean fresh) {
+            this.files = files;
+            this.fresh = fresh;
+        }
+    }
+
+    /**
+     * A valid file offered to the selection, and the exchange sortBy is evaluated on.
+     */
+    private static final class SelectableFile {
+
+        private final GenericFile<SmbFile> file;
+        private final Exchange exchange;
+
+        private SelectableFile(final GenericFile<SmbFile> file,
+                               final Exchange exchange) {
+            this.file = file;
+            this.exchange = exchange;
+        }
+    }
+
     @Override
     public SmbEndpoint getEndpoint() {
         return (SmbEndpoint) super.getEndpoint();
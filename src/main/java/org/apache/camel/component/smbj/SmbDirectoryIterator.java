@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.smbj.share.Directory;
+import com.hierynomus.smbj.share.DiskShare;
+import org.apache.camel.component.file.GenericFileOperationFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+
+/**
+ * This class iterates the files of a directory page by page, so a consumer which stops early does not enumerate the whole directory,
+ * and only the current page of directory entries is held in memory. The directory stays open and the disk share stays borrowed
+ * until the iterator is closed, which must be done even if the iteration has not been completed.
+ *
+ * @since 10/16/2026
+ */
+public class SmbDirectoryIterator implements Iterator<SmbFile>, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SmbDirectoryIterator.class);
+    private final SmbDiskSharePool pool;
+    private final DiskShare share;
+    private final Directory directory;
+    private final String path;
+    private final Iterator<FileIdBothDirectoryInformation> entries;
+    private final BiFunction<String, FileIdBothDirectoryInformation, SmbFile> mapper;
+    private final Iterator<SmbFile> files;
+    private SmbFile next;
+    private boolean closed = false;
+
+    /**
+     * @param pool          the pool the disk share has been borrowed from
+     * @param share         the borrowed disk share, which is given back when the iterator is closed
+     * @param directory     the open directory, which is closed when the iterator is closed
+     * @param path          the normalized path of the directory
+     * @param searchPattern the search pattern which may contain the wildcards '*' and '?', or null to iterate all entries
+     * @param mapper        the mapper of a directory entry and the path of its directory to the smb file
+     */
+    SmbDirectoryIterator(final SmbDiskSharePool pool,
+                         final DiskShare share,
+                         final Directory directory,
+                         final String path,
+                         final String searchPattern,
+                         final BiFunction<String, FileIdBothDirectoryInformation, SmbFile> mapper) {
+        this.pool = pool;
+        this.share = share;
+        this.directory = directory;
+        this.path = path;
+        this.mapper = mapper;
+        this.files = null;
+        this.entries = directory.iterator(FileIdBothDirectoryInformation.class, searchPattern);
+    }
+
+    /**
+     * @param path  the normalized path which has been listed
+     * @param files the already known files of the path, which hold no remote resources
+     */
+    SmbDirectoryIterator(final String path,
+                         final Iterable<SmbFile> files) {
+        this.pool = null;
+        this.share = null;
+        this.directory = null;
+        this.path = path;
+        this.mapper = null;
+        this.entries = null;
+        this.files = files.iterator();
+    }
+
+    /**
+     * @param path the normalized path which does not exist
+     * @return an iterator without files
+     */
+    static SmbDirectoryIterator empty(final String path) {
+        return new SmbDirectoryIterator(path, Collections.emptyList());
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        if (files != null) {
+            next = files.hasNext() ? files.next() : null;
+            return next != null;
+        }
+        try {
+            while (entries.hasNext()) {
+                final FileIdBothDirectoryInformation info = entries.next();
+                // Exclude Linux . and .. directories
+                if (!info.getFileName().equals(".") && !info.getFileName().equals("..")) {
+                    next = mapper.apply(path, info);
+                    return true;
+                }
+            }
+            return false;
+        } catch (RuntimeException e) {
+            release(e);
+            throw new GenericFileOperationFailedException(String.format("Could not list files for path: '%s'", path), e);
+        }
+    }
+
+    @Override
+    public SmbFile next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException(String.format("No more files in path: '%s'", path));
+        }
+        final SmbFile file = next;
+        next = null;
+        return file;
+    }
+
+    /**
+     * Closes the directory and gives the disk share back to the pool.
+     */
+    @Override
+    public void close() {
+        release(null);
+    }
+
+    private void release(final Exception error) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (directory == null) {
+            return;
+        }
+        if (error != null && SmbDiskSharePool.isConnectionFailure(error)) {
+            pool.invalidate(share);
+            return;
+        }
+        try {
+            directory.close();
+            pool.release(share);
+        } catch (Exception e) {
+            LOG.debug(String.format("Could not close directory '%s'", path), e);
+            if (SmbDiskSharePool.isConnectionFailure(e)) {
+                pool.invalidate(share);
+            } else {
+                pool.release(share);
+            }
+        }
+    }
+}
@@ -0,0 +1,352 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import java.nio.CharBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * This class holds the listing of a single directory in columns instead of one smb file per entry.
+ * The attributes are packed into a byte, sizes and change times are held in primitive arrays, the names of all entries share
+ * a single char array, and the parent directory is held once for all entries. An smb file is only created when an entry is accessed
+ * as list element, so entries can be filtered by name and type before anything is created for them.
+ * The snapshot is immutable, therefore it can be shared, e.g. by a listing cache.
+ *
+ * @since 10/16/2026
+ */
+public class SmbDirectorySnapshot extends AbstractList<SmbFile> implements RandomAccess {
+
+    private static final byte DIRECTORY = 0x1;
+    private static final byte ARCHIVE = 0x2;
+    private static final byte HIDDEN = 0x4;
+    private static final byte READ_ONLY = 0x8;
+    private static final byte SYSTEM = 0x10;
+    // Below this number of entries a range is sorted by insertion, which is faster than merging
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    private final String directory;
+    private final String parentDirectory;
+    private final int size;
+    private final byte[] attributes;
+    private final long[] fileLengths;
+    private final long[] lastModified;
+    private final char[] names;
+    private final int[] nameOffsets;
+
+    private SmbDirectorySnapshot(final String directory,
+                                 final String parentDirectory,
+                                 final int size,
+                                 final byte[] attributes,
+                                 final long[] fileLengths,
+                                 final long[] lastModified,
+                                 final char[] names,
+                                 final int[] nameOffsets) {
+        this.directory = directory;
+        this.parentDirectory = parentDirectory;
+        this.size = size;
+        this.attributes = attributes;
+        this.fileLengths = fileLengths;
+        this.lastModified = lastModified;
+        this.names = names;
+        this.nameOffsets = nameOffsets;
+    }
+
+    /**
+     * Creates a new smb file for the entry.
+     *
+     * @param index the index of the entry
+     * @return the smb file of the entry
+     */
+    @Override
+    public SmbFile get(final int index) {
+        checkIndex(index);
+        final byte bits = attributes[index];
+        return new SmbFile((bits & DIRECTORY) != 0,
+                           (bits & ARCHIVE) != 0,
+                           (bits & HIDDEN) != 0,
+                           (bits & READ_ONLY) != 0,
+                           (bits & SYSTEM) != 0,
+                           parentDirectory,
+                           getFileName(index),
+                           fileLengths[index],
+                           lastModified[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the normalized path of the listed directory
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param index the index of the entry
+     * @return true if the entry is a directory, false otherwise
+     */
+    public boolean isDirectory(final int index) {
+        checkIndex(index);
+        return (attributes[index] & DIRECTORY) != 0;
+    }
+
+    /**
+     * @param index the index of the entry
+     * @return the name of the entry without any path
+     */
+    public String getFileName(final int index) {
+        checkIndex(index);
+        return new String(names, nameOffsets[index], nameOffsets[index + 1] - nameOffsets[index]);
+    }
+
+    /**
+     * @param index the index of the entry
+     * @return a view on the name of the entry, which can be matched without creating a string
+     */
+    public CharSequence getFileNameSequence(final int index) {
+        checkIndex(index);
+        return CharBuffer.wrap(names, nameOffsets[index], nameOffsets[index + 1] - nameOffsets[index]);
+    }
+
+    /**
+     * @param index  the index of the entry
+     * @param prefix the prefix to check
+     * @return true if the name of the entry starts with the prefix, false otherwise
+     */
+    public boolean fileNameStartsWith(final int index,
+                                      final String prefix) {
+        checkIndex(index);
+        return regionEquals(nameOffsets[index], nameOffsets[index + 1], nameOffsets[index], prefix);
+    }
+
+    /**
+     * @param index  the index of the entry
+     * @param suffix the suffix to check
+     * @return true if the name of the entry ends with the suffix, false otherwise
+     */
+    public boolean fileNameEndsWith(final int index,
+                                    final String suffix) {
+        checkIndex(index);
+        return regionEquals(nameOffsets[index], nameOffsets[index + 1], nameOffsets[index + 1] - suffix.length(), suffix);
+    }
+
+    /**
+     * @param fileName the name without any path
+     * @return true if an entry has the name, false otherwise
+     */
+    public boolean containsFileName(final String fileName) {
+        for (int i = 0; i < size; i++) {
+            if (nameOffsets[i + 1] - nameOffsets[i] == fileName.length() && regionEquals(nameOffsets[i], nameOffsets[i + 1], nameOffsets[i], fileName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sorts the entries by name, which is the same order as by their full names, because all entries share the same parent directory.
+     *
+     * @return a new snapshot with the entries sorted by name
+     */
+    public SmbDirectorySnapshot sortedByName() {
+        final int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        sortIndices(order, order.clone(), 0, size);
+        final byte[] sortedAttributes = new byte[size];
+        final long[] sortedFileLengths = new long[size];
+        final long[] sortedLastModified = new long[size];
+        final char[] sortedNames = new char[nameOffsets[size]];
+        final int[] sortedNameOffsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            final int index = order[i];
+            final int length = nameOffsets[index + 1] - nameOffsets[index];
+            sortedAttributes[i] = attributes[index];
+            sortedFileLengths[i] = fileLengths[index];
+            sortedLastModified[i] = lastModified[index];
+            System.arraycopy(names, nameOffsets[index], sortedNames, sortedNameOffsets[i], length);
+            sortedNameOffsets[i + 1] = sortedNameOffsets[i] + length;
+        }
+        return new SmbDirectorySnapshot(directory, parentDirectory, size, sortedAttributes, sortedFileLengths, sortedLastModified, sortedNames, sortedNameOffsets);
+    }
+
+    /**
+     * Sorts the entry indices by name with a merge sort on the primitive indices, so no index gets boxed.
+     * The sort is stable, and the range is sorted by insertion if it is short.
+     *
+     * @param order   the indices to sort within the range
+     * @param scratch a copy of the indices within the range, which is used as the merge buffer
+     * @param from    the inclusive start of the range
+     * @param to      the exclusive end of the range
+     */
+    private void sortIndices(final int[] order,
+                             final int[] scratch,
+                             final int from,
+                             final int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                final int index = order[i];
+                int j = i - 1;
+                while (j >= from && compareFileNames(order[j], index) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = index;
+            }
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        // The halves are sorted into the scratch, which is then merged back into the order
+        sortIndices(scratch, order, from, middle);
+        sortIndices(scratch, order, middle, to);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compareFileNames(scratch[left], scratch[right]) <= 0)) {
+                order[i] = scratch[left++];
+            } else {
+                order[i] = scratch[right++];
+            }
+        }
+    }
+
+    private int compareFileNames(final int left,
+                                 final int right) {
+        final int leftLength = nameOffsets[left + 1] - nameOffsets[left];
+        final int rightLength = nameOffsets[right + 1] - nameOffsets[right];
+        for (int i = 0; i < Math.min(leftLength, rightLength); i++) {
+            final char leftChar = names[nameOffsets[left] + i];
+            final char rightChar = names[nameOffsets[right] + i];
+            if (leftChar != rightChar) {
+                return leftChar - rightChar;
+            }
+        }
+        return leftLength - rightLength;
+    }
+
+    private boolean regionEquals(final int start,
+                                 final int end,
+                                 final int offset,
+                                 final String value) {
+        if (offset < start || offset + value.length() > end) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (names[offset + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index '%d' is out of bounds for '%d' entries", index, size));
+        }
+    }
+
+    /**
+     * This class collects the entries of a directory while it is listed.
+     */
+    public static final class Builder {
+
+        private static final int INITIAL_CAPACITY = 16;
+        private final String directory;
+        private String parentDirectory;
+        private int size = 0;
+        private byte[] attributes = new byte[INITIAL_CAPACITY];
+        private long[] fileLengths = new long[INITIAL_CAPACITY];
+        private long[] lastModified = new long[INITIAL_CAPACITY];
+        private char[] names = new char[INITIAL_CAPACITY * 16];
+        private int[] nameOffsets = new int[INITIAL_CAPACITY + 1];
+
+        /**
+         * @param directory the normalized path of the listed directory
+         */
+        public Builder(final String directory) {
+            this.directory = Objects.requireNonNull(directory, "Cannot list a null directory");
+        }
+
+        /**
+         * Adds a listed entry.
+         *
+         * @param fileName     the name of the entry without any path
+         * @param attributes   the smb file attributes of the entry
+         * @param fileLength   the size of the entry
+         * @param lastModified the change time of the entry in milliseconds
+         * @return this builder
+         */
+        public Builder add(final String fileName,
+                           final long attributes,
+                           final long fileLength,
+                           final long lastModified) {
+            if (parentDirectory == null) {
+                // The parent directory is the same for all entries, therefore it is derived once the same way as for a single smb file
+                final String pathPrefix = directory.isEmpty() ? directory : (directory + "\\");
+                parentDirectory = new SmbFile(false, false, false, false, false, SmbFileOperations.normalizeFileNameOrPath(pathPrefix + fileName), 0, 0).getParentDirectory();
+            }
+            if (size == this.attributes.length) {
+                final int capacity = size * 2;
+                this.attributes = Arrays.copyOf(this.attributes, capacity);
+                this.fileLengths = Arrays.copyOf(this.fileLengths, capacity);
+                this.lastModified = Arrays.copyOf(this.lastModified, capacity);
+                this.nameOffsets = Arrays.copyOf(this.nameOffsets, capacity + 1);
+            }
+            final int nameOffset = nameOffsets[size];
+            if (nameOffset + fileName.length() > names.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, nameOffset + fileName.length()));
+            }
+            fileName.getChars(0, fileName.length(), names, nameOffset);
+            this.attributes[size] = pack(attributes);
+            this.fileLengths[size] = fileLength;
+            this.lastModified[size] = lastModified;
+            nameOffsets[size + 1] = nameOffset + fileName.length();
+            size++;
+            return this;
+        }
+
+        /**
+         * @return the snapshot of the added entries, whereby the arrays are trimmed to their size
+         */
+        public SmbDirectorySnapshot build() {
+            return new SmbDirectorySnapshot(directory,
+                                            parentDirectory,
+                                            size,
+                                            Arrays.copyOf(attributes, size),
+                                            Arrays.copyOf(fileLengths, size),
+                                            Arrays.copyOf(lastModified, size),
+                                            Arrays.copyOf(names, nameOffsets[size]),
+                                            Arrays.copyOf(nameOffsets, size + 1));
+        }
+
+        private static byte pack(final long attributes) {
+            byte bits = 0;
+            bits |= SmbFileAttributeUtils.isDirectory(attributes) ? DIRECTORY : 0;
+            bits |= SmbFileAttributeUtils.isArchive(attributes) ? ARCHIVE : 0;
+            bits |= SmbFileAttributeUtils.isHidden(attributes) ? HIDDEN : 0;
+            bits |= SmbFileAttributeUtils.isReadOnly(attributes) ? READ_ONLY : 0;
+            bits |= SmbFileAttributeUtils.isSystem(attributes) ? SYSTEM : 0;
+            return bits;
+        }
+    }
+}
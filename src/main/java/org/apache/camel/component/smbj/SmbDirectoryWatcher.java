@@ -0,0 +1,277 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2CompletionFilter;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.mssmb2.messages.SMB2ChangeNotifyRequest;
+import com.hierynomus.mssmb2.messages.SMB2ChangeNotifyResponse;
+import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smbj.session.Session;
+import com.hierynomus.smbj.share.Directory;
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.share.TreeConnect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class watches a directory via SMB2 CHANGE_NOTIFY and collects the names of added, renamed and modified files,
+ * so the consumer can pick them up without listing the directory.
+ * If events may have been missed, because the server dropped them or the watch had to be re-established,
+ * then a full re-sync is requested, which the consumer performs by listing the directory.
+ * A change notify request which is not answered within the timeout is cancelled and issued again, whereby the server must answer
+ * the cancellation within the timeout as well, otherwise the connection is considered broken and the watch is re-established.
+ *
+ * @since 10/16/2026
+ */
+public class SmbDirectoryWatcher implements Runnable, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SmbDirectoryWatcher.class);
+    private static final int NOTIFY_BUFFER_LENGTH = 64 * 1024;
+    private static final long RECONNECT_DELAY = 1000;
+    // The status of a cancelled request, which is not known to the NtStatus enum of smbj
+    private static final long STATUS_CANCELLED = 0xC0000120L;
+    private static final Set<SMB2CompletionFilter> COMPLETION_FILTER = EnumSet.of(SMB2CompletionFilter.FILE_NOTIFY_CHANGE_FILE_NAME,
+                                                                                  SMB2CompletionFilter.FILE_NOTIFY_CHANGE_SIZE,
+                                                                                  SMB2CompletionFilter.FILE_NOTIFY_CHANGE_LAST_WRITE);
+    private final SmbDiskSharePool diskSharePool;
+    private final String directory;
+    private final boolean recursive;
+    private final long resyncInterval;
+    private final long timeout;
+    private final Set<String> pendingNames = new LinkedHashSet<>();
+    private volatile boolean resyncRequested = true;
+    private volatile long lastResync = 0;
+    private volatile boolean closed = false;
+    private volatile Directory watchedDirectory;
+
+    /**
+     * @param diskSharePool  the pool to borrow the disk share from, which is held as long as the directory is watched
+     * @param directory      the normalized path of the directory to watch
+     * @param recursive      true if the sub directories are watched as well, false otherwise
+     * @param resyncInterval the interval in milliseconds after which a full re-sync is requested
+     * @param timeout        the timeout in milliseconds after which an unanswered change notify request is cancelled and issued again
+     */
+    public SmbDirectoryWatcher(final SmbDiskSharePool diskSharePool,
+                               final String directory,
+                               final boolean recursive,
+                               final long resyncInterval,
+                               final long timeout) {
+        this.diskSharePool = Objects.requireNonNull(diskSharePool, "Cannot watch with a null disk share pool");
+        this.directory = Objects.requireNonNull(directory, "Cannot watch a null directory");
+        this.recursive = recursive;
+        this.resyncInterval = resyncInterval;
+        this.timeout = Math.max(1, timeout);
+    }
+
+    /**
+     * Answers the question whether a full re-sync is due. If so, then the pending names are discarded,
+     * because the full listing covers them, and the re-sync is considered as done.
+     *
+     * @return true if the directory must be listed, false if the pending names are sufficient
+     */
+    public boolean beginResyncIfDue() {
+        final long now = System.currentTimeMillis();
+        if (!resyncRequested && (resyncInterval <= 0 || now - lastResync < resyncInterval)) {
+            return false;
+        }
+        synchronized (pendingNames) {
+            pendingNames.clear();
+            resyncRequested = false;
+        }
+        lastResync = now;
+        return true;
+    }
+
+    /**
+     * @return the names relative to the watched directory, which have been reported since the last call, in the order of their first report
+     */
+    public List<String> drainPendingNames() {
+        synchronized (pendingNames) {
+            final List<String> names = new ArrayList<>(pendingNames);
+            pendingNames.clear();
+            return names;
+        }
+    }
+
+    /**
+     * Gives names back which have been drained but could not be processed, so they are picked up by the next poll.
+     *
+     * @param names the names relative to the watched directory
+     */
+    public void requeue(final Collection<String> names) {
+        synchronized (pendingNames) {
+            pendingNames.addAll(names);
+        }
+    }
+
+    /**
+     * Watches the directory until this watcher gets closed. A broken watch is re-established after a delay.
+     */
+    @Override
+    public void run() {
+        while (!closed) {
+            final DiskShare share;
+            try {
+                share = diskSharePool.borrow();
+            } catch (Exception e) {
+                LOG.warn(String.format("Could not borrow disk share for watching '%s', due to '%s'", directory, e.getMessage()));
+                sleepBeforeReconnect();
+                continue;
+            }
+            Exception error = null;
+            try {
+                watchedDirectory = share.openDirectory(directory,
+                                                       EnumSet.of(AccessMask.FILE_LIST_DIRECTORY, AccessMask.FILE_READ_ATTRIBUTES),
+                                                       null,
+                                                       SMB2ShareAccess.ALL,
+                                                       SMB2CreateDisposition.FILE_OPEN,
+                                                       null);
+                // Changes may have happened while the directory was not watched
+                resyncRequested = true;
+                watch(watchedDirectory);
+            } catch (Exception e) {
+                error = e;
+                if (!closed) {
+                    LOG.warn(String.format("Watching '%s' failed, due to '%s'", directory, e.getMessage()));
+                }
+            } finally {
+                final Directory openDirectory = watchedDirectory;
+                watchedDirectory = null;
+                if (openDirectory != null) {
+                    openDirectory.closeSilently();
+                }
+                if (error != null && SmbDiskSharePool.isConnectionFailure(error)) {
+                    diskSharePool.invalidate(share);
+                } else {
+                    diskSharePool.release(share);
+                }
+            }
+            if (!closed) {
+                resyncRequested = true;
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    /**
+     * Stops watching the directory. Closing the directory handle completes the outstanding change notify request.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        final Directory openDirectory = watchedDirectory;
+        if (openDirectory != null) {
+            openDirectory.closeSilently();
+        }
+    }
+
+    private void watch(final Directory watched) throws Exception {
+        final TreeConnect treeConnect = watched.getDiskShare().getTreeConnect();
+        final Session session = treeConnect.getSession();
+        while (!closed) {
+            final Future<SMB2ChangeNotifyResponse> future = session.send(new SMB2ChangeNotifyRequest(session.getConnection().getNegotiatedProtocol().getDialect(),
+                                                                                                     session.getSessionId(),
+                                                                                                     treeConnect.getTreeId(),
+                                                                                                     watched.getFileId(),
+                                                                                                     COMPLETION_FILTER,
+                                                                                                     NOTIFY_BUFFER_LENGTH,
+                                                                                                     recursive));
+            final SMB2ChangeNotifyResponse response = await(future);
+            final long status = response.getHeader().getStatusCode();
+            if (status == NtStatus.STATUS_NOTIFY_CLEANUP.getValue()) {
+                return;
+            } else if (status == STATUS_CANCELLED) {
+                // The server keeps collecting the changes on the open handle, so they are reported to the next request
+                LOG.trace(String.format("Change notify on '%s' cancelled after '%d' ms without changes, issuing it again", directory, timeout));
+            } else if (status == NtStatus.STATUS_NOTIFY_ENUM_DIR.getValue()) {
+                LOG.debug(String.format("Too many changes in '%s' to be reported, requesting a re-sync", directory));
+                resyncRequested = true;
+            } else if (!response.isSuccess()) {
+                throw new SMBApiException(response.getHeader(), String.format("Change notify on '%s' failed", directory));
+            } else {
+                collect(response.getFileNotifyInfoList());
+            }
+        }
+    }
+
+    /**
+     * Waits for the response of a change notify request. A request which is not answered within the timeout is cancelled,
+     * and the server must answer the cancellation within the timeout, otherwise the connection is considered broken.
+     *
+     * @param future the response of the change notify request
+     * @return the response, which has the status STATUS_CANCELLED if the request has been cancelled
+     * @throws Exception if the request failed or the connection is considered broken
+     */
+    private SMB2ChangeNotifyResponse await(final Future<SMB2ChangeNotifyResponse> future) throws Exception {
+        try {
+            try {
+                return future.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+            }
+            try {
+                return future.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new TransportException(String.format("Cancellation of change notify on '%s' not answered within '%d' ms", directory, timeout));
+            }
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private void collect(final List<SMB2ChangeNotifyResponse.FileNotifyInfo> infos) {
+        synchronized (pendingNames) {
+            for (final SMB2ChangeNotifyResponse.FileNotifyInfo info : infos) {
+                switch (info.getAction()) {
+                    case FILE_ACTION_ADDED:
+                    case FILE_ACTION_MODIFIED:
+                    case FILE_ACTION_RENAMED_NEW_NAME:
+                        pendingNames.add(info.getFileName());
+                        break;
+                    case FILE_ACTION_REMOVED:
+                    case FILE_ACTION_REMOVED_BY_DELETE:
+                    case FILE_ACTION_RENAMED_OLD_NAME:
+                        pendingNames.remove(info.getFileName());
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.session.Session;
+import com.hierynomus.smbj.share.DiskShare;
+import org.apache.camel.component.file.GenericFileOperationFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is a pool of authenticated disk shares, which are kept open and reused by the file operations,
+ * to avoid a full connect, session setup and tree connect for each single file operation.
+ * The sessions the disk shares are connected on are acquired from the session registry of the component.
+ * <p>
+ * All borrowers share the limit of poolMaxTotal. Besides the short file operations, some borrowers hold a disk share
+ * for a longer time: the directory watcher for as long as the consumer runs, a stream download until its exchange is done,
+ * a lazy directory enumeration until the poll has walked it, an exclusive read lock until the file is committed,
+ * and the asynchronous stores of a producer, which share a single disk share, as long as any of them is in flight.
+ * The limit must leave room for the short file operations beside them, otherwise these wait up to poolMaxWait for a free disk share.
+ * Therefore the consumer refuses to start if its holders leave no room, and the file operations of an exchange which holds
+ * a disk share reuse it, instead of borrowing another one.
+ *
+ * @since 10/16/2026
+ */
+public class SmbDiskSharePool implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SmbDiskSharePool.class);
+    // The statuses by which the server tells that the session or tree connect of a request is gone
+    private static final Set<NtStatus> BROKEN_SHARE_STATUSES = EnumSet.of(NtStatus.STATUS_NETWORK_NAME_DELETED,
+                                                                          NtStatus.STATUS_USER_SESSION_DELETED,
+                                                                          NtStatus.STATUS_NETWORK_SESSION_EXPIRED,
+                                                                          NtStatus.STATUS_CONNECTION_DISCONNECTED);
+    private final SMBClient client;
+    private final SmbSessionRegistry sessionRegistry;
+    private final SmbConfiguration configuration;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledDiskShare> idle = new LinkedBlockingDeque<>();
+    private final Map<DiskShare, PooledDiskShare> borrowed = Collections.synchronizedMap(new IdentityHashMap<>());
+    private volatile boolean closed = false;
+
+    /**
+     * @param client          the smb client used to connect to the server
+     * @param sessionRegistry the registry to acquire the sessions from
+     * @param configuration   the smb configuration holding the host, share, credentials and pool limits
+     */
+    public SmbDiskSharePool(final SMBClient client,
+                            final SmbSessionRegistry sessionRegistry,
+                            final SmbConfiguration configuration) {
+        this.client = Objects.requireNonNull(client, "Cannot create pool with a null client");
+        this.sessionRegistry = Objects.requireNonNull(sessionRegistry, "Cannot create pool with a null session registry");
+        this.configuration = Objects.requireNonNull(configuration, "Cannot create pool with a null configuration");
+        this.permits = new Semaphore(Math.max(1, configuration.getPoolMaxTotal()), true);
+    }
+
+    /**
+     * Answers the question whether the given error was caused by a broken connection, session or tree connect,
+     * which means that the disk share which caused the error cannot be used anymore.
+     * Any other error, e.g. a missing file or a denied access, leaves the disk share usable.
+     *
+     * @param error the error to check
+     * @return true if the error indicates a broken disk share, false otherwise
+     */
+    public static boolean isConnectionFailure(final Throwable error) {
+        Throwable current = error;
+        while (current != null) {
+            if (current instanceof TransportException) {
+                return true;
+            }
+            if (current instanceof SMBApiException) {
+                return BROKEN_SHARE_STATUSES.contains(((SMBApiException) current).getStatus());
+            }
+            current = current.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * Borrows a disk share from the pool. An idle disk share is validated before it is handed out and
+     * replaced by a newly connected one if it is not usable anymore.
+     *
+     * @return the borrowed disk share, which must be given back via {@link #release(DiskShare)} or {@link #invalidate(DiskShare)}
+     * @throws GenericFileOperationFailedException if no disk share could be borrowed
+     */
+    public DiskShare borrow() {
+        if (closed) {
+            throw new GenericFileOperationFailedException("Cannot borrow a disk share from a closed pool");
+        }
+        try {
+            if (!permits.tryAcquire(configuration.getPoolMaxWait(), TimeUnit.MILLISECONDS)) {
+                throw new GenericFileOperationFailedException(String.format("Timed out after '%d' ms waiting for a free disk share (poolMaxTotal=%d)",
+                                                                            configuration.getPoolMaxWait(), configuration.getPoolMaxTotal()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenericFileOperationFailedException("Interrupted while waiting for a free disk share", e);
+        }
+
+        try {
+            PooledDiskShare pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (pooled.isValid()) {
+                    break;
+                }
+                LOG.debug(String.format("Discarding stale disk share '%s'", pooled));
+                pooled.destroy();
+            }
+            if (pooled == null) {
+                pooled = create();
+            }
+            borrowed.put(pooled.share, pooled);
+            return pooled.share;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a borrowed disk share back to the pool, so it can be reused.
+     *
+     * @param share the borrowed disk share
+     */
+    public void release(final DiskShare share) {
+        final PooledDiskShare pooled = borrowed.remove(share);
+        if (pooled == null) {
+            return;
+        }
+        try {
+            if (closed || !pooled.isValid()) {
+                pooled.destroy();
+            } else {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Destroys a borrowed disk share, because it is not usable anymore.
+     *
+     * @param share the borrowed disk share
+     */
+    public void invalidate(final DiskShare share) {
+        final PooledDiskShare pooled = borrowed.remove(share);
+        if (pooled == null) {
+            return;
+        }
+        try {
+            pooled.destroy();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Evicts the disk shares which have been idle longer than the configured idle timeout, but keeps at least
+     * the configured minimum of idle disk shares open. Intended to be invoked periodically.
+     */
+    public void evict() {
+        if (closed) {
+            return;
+        }
+        final long threshold = System.currentTimeMillis() - configuration.getPoolIdleTimeout();
+        final int minIdle = configuration.getPoolMinIdle();
+        // The least recently used disk shares are located at the end of the deque
+        final Iterator<PooledDiskShare> iterator = idle.descendingIterator();
+        while (iterator.hasNext() && idle.size() > minIdle) {
+            final PooledDiskShare pooled = iterator.next();
+            if ((pooled.lastUsed < threshold || !pooled.isValid()) && idle.removeLastOccurrence(pooled)) {
+                LOG.debug(String.format("Evicting idle disk share '%s'", pooled));
+                pooled.destroy();
+            }
+        }
+        while (!closed && idle.size() < minIdle && permits.tryAcquire()) {
+            try {
+                idle.offerLast(create());
+            } catch (Exception e) {
+                LOG.debug(String.format("Could not open idle disk share, due to '%s'", e.getMessage()));
+                break;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * @return the number of currently idle disk shares
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return the number of currently borrowed disk shares
+     */
+    public int getBorrowedCount() {
+        return borrowed.size();
+    }
+
+    /**
+     * Closes all idle disk shares. Borrowed disk shares are closed when they are given back.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledDiskShare pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.destroy();
+        }
+    }
+
+    /**
+     * Acquires a session for the configured server and credentials and connects the configured share.
+     *
+     * @return the newly created pooled disk share
+     */
+    private PooledDiskShare create() {
+        final Session session = sessionRegistry.acquire(client, configuration);
+        try {
+            final PooledDiskShare pooled = new PooledDiskShare(session, (DiskShare) session.connectShare(configuration.getShare()));
+            LOG.debug(String.format("Opened disk share '%s'", pooled));
+            return pooled;
+        } catch (RuntimeException e) {
+            sessionRegistry.release(session);
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(final AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            LOG.trace(String.format("Error while closing '%s' ignored", closeable), e);
+        }
+    }
+
+    /**
+     * The pooled disk share, together with the session it has been connected on.
+     */
+    private final class PooledDiskShare {
+
+        private final Session session;
+        private final DiskShare share;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private PooledDiskShare(final Session session,
+                                final DiskShare share) {
+            this.session = session;
+            this.share = share;
+        }
+
+        private boolean isValid() {
+            return share.isConnected() && sessionRegistry.isValid(session);
+        }
+
+        private void destroy() {
+            closeQuietly(share);
+            // The session is shared with other disk shares, therefore only give it back to the registry
+            sessionRegistry.release(session);
+        }
+
+        @Override
+        public String toString() {
+            return share.getSmbPath().toUncPath();
+        }
+    }
+}
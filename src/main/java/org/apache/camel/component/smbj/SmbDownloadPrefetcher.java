@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * This class downloads the upcoming files of a poll into memory while the current file is processed.
+ * The files are expected to be retrieved in the order they have been given, so a file which is retrieved ahead of a prefetched one
+ * means the prefetched one has been skipped, whose download is then dropped. The number of prefetched files and the number
+ * of bytes they occupy are bounded, and files larger than the maximum file size are never prefetched.
+ * A file whose prefetch failed is retrieved the usual way.
+ *
+ * @since 10/16/2026
+ */
+public class SmbDownloadPrefetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SmbDownloadPrefetcher.class);
+    private final SmbFileOperations operations;
+    private final ExecutorService executor;
+    private final int depth;
+    private final long byteBudget;
+    private final long maxFileSize;
+    private final Deque<Candidate> pending = new ArrayDeque<>();
+    private final Map<String, Prefetch> prefetches = new LinkedHashMap<>();
+    private final Map<String, Integer> indexByName = new HashMap<>();
+    private long reservedBytes = 0;
+
+    /**
+     * @param operations  the operations to download the files with
+     * @param executor    the executor running the downloads
+     * @param depth       the maximum number of files prefetched at once
+     * @param byteBudget  the maximum number of bytes occupied by the prefetched files which have not been retrieved yet
+     * @param maxFileSize the maximum size of a file to prefetch
+     */
+    public SmbDownloadPrefetcher(final SmbFileOperations operations,
+                                 final ExecutorService executor,
+                                 final int depth,
+                                 final long byteBudget,
+                                 final long maxFileSize) {
+        this.operations = Objects.requireNonNull(operations, "Cannot prefetch with null operations");
+        this.executor = Objects.requireNonNull(executor, "Cannot prefetch with a null executor");
+        this.depth = depth;
+        this.byteBudget = byteBudget;
+        this.maxFileSize = Math.min(byteBudget, maxFileSize);
+    }
+
+    /**
+     * Starts prefetching the given files of a poll, whereby the prefetches of the previous poll are dropped.
+     *
+     * @param names the names of the files in the order they are going to be retrieved
+     * @param sizes the listed sizes of the files
+     */
+    public synchronized void begin(final List<String> names,
+                                   final List<Long> sizes) {
+        clear();
+        for (int i = 0; i < names.size(); i++) {
+            final String name = SmbFileOperations.normalizeFileNameOrPath(names.get(i));
+            indexByName.putIfAbsent(name, i);
+            pending.addLast(new Candidate(name, i, Math.max(0, sizes.get(i))));
+        }
+        schedule();
+    }
+
+    /**
+     * Takes the prefetched content of a file, and drops the prefetches of the files before it, because they have been skipped.
+     *
+     * @param normalizedName the normalized name of the file to retrieve
+     * @return the stream on the prefetched content, or null if the file has not been prefetched or its prefetch failed
+     */
+    public InputStream take(final String normalizedName) {
+        final Prefetch prefetch;
+        synchronized (this) {
+            prefetch = dropUpTo(normalizedName);
+        }
+        if (prefetch == null) {
+            return null;
+        }
+        try {
+            return prefetch.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            LOG.debug(String.format("Prefetch of '%s' failed, retrieving it again", normalizedName), e.getCause());
+            return null;
+        } finally {
+            synchronized (this) {
+                // The prefetches may have been cleared meanwhile
+                reservedBytes = Math.max(0, reservedBytes - prefetch.size);
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Drops all pending and running prefetches, whereby running downloads are completed in the background and discarded.
+     */
+    public synchronized void clear() {
+        prefetches.values().forEach(prefetch -> prefetch.future.cancel(false));
+        prefetches.clear();
+        pending.clear();
+        indexByName.clear();
+        reservedBytes = 0;
+    }
+
+    /**
+     * Removes the prefetch of the given file and drops everything which has been scheduled before it.
+     *
+     * @param normalizedName the normalized name of the file to retrieve
+     * @return the prefetch of the file, whose reserved bytes are still accounted, or null if it has not been prefetched
+     */
+    private Prefetch dropUpTo(final String normalizedName) {
+        final Integer index = indexByName.get(normalizedName);
+        if (index == null) {
+            return null;
+        }
+        Prefetch taken = null;
+        final Iterator<Map.Entry<String, Prefetch>> iterator = prefetches.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Prefetch> entry = iterator.next();
+            if (entry.getValue().index > index) {
+                break;
+            }
+            iterator.remove();
+            if (entry.getValue().index == index) {
+                taken = entry.getValue();
+            } else {
+                entry.getValue().future.cancel(false);
+                reservedBytes -= entry.getValue().size;
+            }
+        }
+        while (!pending.isEmpty() && pending.peekFirst().index <= index) {
+            pending.pollFirst();
+        }
+        if (taken == null) {
+            schedule();
+        }
+        return taken;
+    }
+
+    private void schedule() {
+        while (prefetches.size() < depth && !pending.isEmpty()) {
+            final Candidate next = pending.peekFirst();
+            if (next.size > maxFileSize || prefetches.containsKey(next.name)) {
+                pending.pollFirst();
+                continue;
+            }
+            if (reservedBytes + next.size > byteBudget) {
+                return;
+            }
+            pending.pollFirst();
+            reservedBytes += next.size;
+            prefetches.put(next.name, new Prefetch(next.index, next.size, executor.submit(() -> operations.downloadToMemory(next.name, maxFileSize))));
+        }
+    }
+
+    /**
+     * A file which has not been prefetched yet.
+     */
+    private static final class Candidate {
+
+        private final String name;
+        private final int index;
+        private final long size;
+
+        private Candidate(final String name,
+                          final int index,
+                          final long size) {
+            this.name = name;
+            this.index = index;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A started prefetch and the number of bytes reserved for it.
+     */
+    private static final class Prefetch {
+
+        private final int index;
+        private final long size;
+        private final Future<InputStream> future;
+
+        private Prefetch(final int index,
+                         final long size,
+                         final Future<InputStream> future) {
+            this.index = index;
+            this.size = size;
+            this.future = future;
+        }
+    }
+}
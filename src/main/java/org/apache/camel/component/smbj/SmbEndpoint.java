@@ -16,18 +16,20 @@
  */
 package org.apache.camel.component.smbj;
 
-import com.hierynomus.smbj.SMBClient;
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
 import org.apache.camel.component.file.GenericFile;
 import org.apache.camel.component.file.GenericFileEndpoint;
 import org.apache.camel.impl.DefaultExchange;
 import org.apache.camel.processor.idempotent.MemoryIdempotentRepository;
+import org.apache.camel.spi.IdempotentRepository;
 import org.apache.camel.spi.UriEndpoint;
 import org.apache.camel.spi.UriParam;
 import org.apache.camel.spi.UriPath;
 
 import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Thomas Herzog <herzog.thomas81@gmail.com>
@@ -36,6 +38,8 @@ import java.util.Map;
 @UriEndpoint(scheme = "smb", title = "SMBJ", label = "SMBJ", syntax = "smb://[username[:password]@]server[:port]/share{/directory}[?options]", consumerClass = SmbConsumer.class)
 public class SmbEndpoint extends GenericFileEndpoint<SmbFile> {
 
+    private static final long STABILITY_TRACKER_EXPIRY = 10 * 60 * 1000;
+
     @UriPath(description = "SMB connection string host[:port]/share")
     private String connectionString;
 
@@ -43,6 +47,39 @@ public class SmbEndpoint extends GenericFileEndpoint<SmbFile> {
     private Boolean download = false;
     @UriParam(name = "fastExistsCheck", defaultValue = "false", defaultValueNote = "Fast exists check is disabled per default", description = "True if fast exist check mode is enabled, false otherwise", javaType = "java.lang.Boolean")
     private boolean fastExistsCheck = false;
+    @UriParam(name = "streamDownload", defaultValue = "false", defaultValueNote = "Per default files are downloaded completely before they are processed", description = "True if the body is a stream bound to the still open remote file, which is only used if no localWorkDirectory is set, false otherwise", javaType = "java.lang.Boolean")
+    private boolean streamDownload = false;
+    @UriParam(name = "serverSideFiltering", defaultValue = "true", defaultValueNote = "Simple filters are applied by the server per default", description = "True if a simple fileName, antInclude or include filter of a non recursive consumer is sent as search pattern to the server, so not matching entries are not transferred, false otherwise", javaType = "java.lang.Boolean")
+    private boolean serverSideFiltering = true;
+    @UriParam(name = "directoryWalkerThreads", defaultValue = "1", defaultValueNote = "Per default directories are walked sequentially", description = "The number of threads listing the sub directories of a recursive consumer concurrently, whereby the files are still collected in depth-first order", javaType = "java.lang.Integer")
+    private int directoryWalkerThreads = 1;
+    @UriParam(name = "watch", defaultValue = "false", defaultValueNote = "Per default the directory is listed on each poll", description = "True if the directory is watched via SMB2 CHANGE_NOTIFY and a poll only picks up the reported files, which makes a short delay cheap, false otherwise", javaType = "java.lang.Boolean")
+    private boolean watch = false;
+    @UriParam(name = "watchResyncInterval", defaultValue = "300000", defaultValueNote = "Per default the watched directory is listed every 5 minutes", description = "The interval in milliseconds after which a watched directory is listed completely to pick up missed changes, whereby a value <= 0 disables it", javaType = "java.lang.Long")
+    private long watchResyncInterval = 300000;
+    @UriParam(name = "listingCacheSize", defaultValue = "0", defaultValueNote = "Per default the listings are not cached", description = "The maximum number of sub directory listings a recursive consumer caches, which are reused as long as the change time of the sub directory is unchanged. Not used together with readLockAcrossPolls, which needs the current sizes of the files", javaType = "java.lang.Integer")
+    private int listingCacheSize = 0;
+    @UriParam(name = "listingCacheRefreshInterval", defaultValue = "600000", defaultValueNote = "Per default a cached listing is refreshed after 10 minutes", description = "The interval in milliseconds after which a cached listing is refreshed, because changes of files do not change the change time of their directory, whereby a value <= 0 disables it", javaType = "java.lang.Long")
+    private long listingCacheRefreshInterval = 600000;
+    @UriParam(name = "readLockAcrossPolls", defaultValue = "false", defaultValueNote = "Per default readLock=changed checks each file by repeated listings", description = "True if readLock=changed grants the lock from the listings of consecutive polls without sleeping, whereby a file which is not stable yet is skipped until a later poll, false otherwise", javaType = "java.lang.Boolean")
+    private boolean readLockAcrossPolls = false;
+    @UriParam(name = "asyncProducer", defaultValue = "false", defaultValueNote = "Per default the routing thread blocks until the file has been written", description = "True if the producer writes files without blocking the routing thread, whereby the exchange is continued when the final write and the close have been acknowledged, false otherwise. Falls back to blocking writes for tempFileName, doneFileName, fileExist=Append, Move or TryRename and for stream bodies", javaType = "java.lang.Boolean")
+    private boolean asyncProducer = false;
+    @UriParam(name = "downloadMemoryThreshold", defaultValue = "0", defaultValueNote = "Per default all files are downloaded into the localWorkDirectory if set", description = "The size in bytes up to which a file is downloaded into memory although a localWorkDirectory is set, whereby a larger file or a file growing beyond it while downloading is spooled to the localWorkDirectory, or 0 to disable it", javaType = "java.lang.Long")
+    private long downloadMemoryThreshold = 0;
+    @UriParam(name = "commitBatchSize", defaultValue = "0", defaultValueNote = "Per default each processed file is moved or deleted when its exchange is done", description = "The number of processed files whose move or delete is queued and committed with pipelined requests over a single connection, whereby the queue is committed at the begin and end of each poll as well, or 0 to disable it. Files which cannot be committed are reported to the exceptionHandler of the consumer", javaType = "java.lang.Integer")
+    private int commitBatchSize = 0;
+    @UriParam(name = "prefetchCount", defaultValue = "0", defaultValueNote = "Per default each file is downloaded when it is processed", description = "The number of upcoming files of a poll which are downloaded into memory in the background while the current file is processed, or 0 to disable it. Not applied for readLock, preMove and streamDownload, and with a localWorkDirectory only files up to the downloadMemoryThreshold are prefetched", javaType = "java.lang.Integer")
+    private int prefetchCount = 0;
+    @UriParam(name = "prefetchByteBudget", defaultValue = "67108864", defaultValueNote = "Per default the prefetched files occupy at most 64MB", description = "The maximum number of bytes occupied by the prefetched files which have not been processed yet, whereby larger files are not prefetched", javaType = "java.lang.Long")
+    private long prefetchByteBudget = 64 * 1024 * 1024;
+    @UriParam(name = "concurrentConsumers", defaultValue = "1", defaultValueNote = "Per default the files of a poll are processed one after another", description = "The number of workers which process the files of a poll in parallel, whereby the directory is still listed once per poll and the next poll starts when all files of the batch have been processed. The files of a batch are not processed in order anymore", javaType = "java.lang.Integer")
+    private int concurrentConsumers = 1;
+
+    private SmbDiskSharePool diskSharePool;
+    private ScheduledExecutorService diskSharePoolEvictor;
+    private SmbFileStabilityTracker stabilityTracker;
+    private SmbCommitBatch commitBatch;
 
     public SmbEndpoint(final String endpointUri,
                        final SmbComponent component,
@@ -72,8 +109,7 @@ public class SmbEndpoint extends GenericFileEndpoint<SmbFile> {
             idempotentRepository = MemoryIdempotentRepository.memoryIdempotentRepository(DEFAULT_IDEMPOTENT_CACHE_SIZE);
         }
 
-        final SmbConfiguration configuration = getConfiguration();
-        final SmbFileOperations fileOperations = new SmbFileOperations(new SMBClient(configuration.getSmbConfig()));
+        final SmbFileOperations fileOperations = new SmbFileOperations(getDiskSharePool());
         fileOperations.setEndpoint(this);
         SmbConsumer consumer = new SmbConsumer(this,
                                                processor,
@@ -87,8 +123,7 @@ public class SmbEndpoint extends GenericFileEndpoint<SmbFile> {
 
     @Override
     public SmbProducer createProducer() {
-        final SmbConfiguration configuration = getConfiguration();
-        final SmbFileOperations fileOperations = new SmbFileOperations(new SMBClient(configuration.getSmbConfig()));
+        final SmbFileOperations fileOperations = new SmbFileOperations(getDiskSharePool());
         fileOperations.setEndpoint(this);
 
         return new SmbProducer(this, fileOperations);
@@ -118,11 +153,92 @@ public class SmbEndpoint extends GenericFileEndpoint<SmbFile> {
         return false;
     }
 
+    @Override
+    public SmbComponent getComponent() {
+        return (SmbComponent) super.getComponent();
+    }
+
     @Override
     public SmbConfiguration getConfiguration() {
         return (SmbConfiguration) configuration;
     }
 
+    /**
+     * Gets the disk share pool of this endpoint, which is shared by all consumers and producers of this endpoint.
+     * The pool is created on first access and closed when this endpoint gets stopped. The smb client and the sessions
+     * are owned by the component, so they are shared with other endpoints connecting to the same server.
+     *
+     * @return the disk share pool of this endpoint
+     */
+    public synchronized SmbDiskSharePool getDiskSharePool() {
+        if (diskSharePool == null) {
+            final SmbConfiguration configuration = getConfiguration();
+            diskSharePool = new SmbDiskSharePool(getComponent().getClient(configuration),
+                                                 getComponent().getSessionRegistry(),
+                                                 configuration);
+            if (getCamelContext() != null) {
+                final long evictionInterval = Math.max(1000, configuration.getPoolIdleTimeout() / 2);
+                diskSharePoolEvictor = getCamelContext().getExecutorServiceManager().newSingleThreadScheduledExecutor(this, "SmbDiskSharePoolEvictor");
+                diskSharePoolEvictor.scheduleWithFixedDelay(diskSharePool::evict, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+            }
+        }
+        return diskSharePool;
+    }
+
+    /**
+     * Gets the stability tracker of this endpoint, which is fed by the consumer and queried by the changed read lock.
+     *
+     * @return the stability tracker of this endpoint
+     */
+    public synchronized SmbFileStabilityTracker getStabilityTracker() {
+        if (stabilityTracker == null) {
+            stabilityTracker = new SmbFileStabilityTracker(STABILITY_TRACKER_EXPIRY);
+        }
+        return stabilityTracker;
+    }
+
+    /**
+     * Gets the commit batch of this endpoint, which is filled by the process strategy and flushed by the consumer.
+     *
+     * @return the commit batch of this endpoint
+     */
+    public synchronized SmbCommitBatch getCommitBatch() {
+        if (commitBatch == null) {
+            commitBatch = new SmbCommitBatch(commitBatchSize);
+        }
+        return commitBatch;
+    }
+
+    /**
+     * Gets the in-progress repository, whose removals of processed files are deferred until the commit batch has committed them,
+     * if the commit batch is enabled.
+     *
+     * @return the in-progress repository of this endpoint
+     */
+    @Override
+    public IdempotentRepository<String> getInProgressRepository() {
+        final IdempotentRepository<String> repository = super.getInProgressRepository();
+        if (commitBatchSize <= 0 || repository == null) {
+            return repository;
+        }
+        return getCommitBatch().wrapInProgressRepository(repository);
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        synchronized (this) {
+            if (diskSharePoolEvictor != null) {
+                getCamelContext().getExecutorServiceManager().shutdownNow(diskSharePoolEvictor);
+                diskSharePoolEvictor = null;
+            }
+            if (diskSharePool != null) {
+                diskSharePool.close();
+                diskSharePool = null;
+            }
+        }
+    }
+
     @Override
     protected Map<String, Object> getParamsAsMap() {
         Map<String, Object> map = super.getParamsAsMap();
@@ -155,5 +271,117 @@ public class SmbEndpoint extends GenericFileEndpoint<SmbFile> {
     public void setFastExistsCheck(boolean fastExistsCheck) {
         this.fastExistsCheck = fastExistsCheck;
     }
+
+    public boolean isStreamDownload() {
+        return streamDownload;
+    }
+
+    public void setStreamDownload(boolean streamDownload) {
+        this.streamDownload = streamDownload;
+    }
+
+    public boolean isServerSideFiltering() {
+        return serverSideFiltering;
+    }
+
+    public void setServerSideFiltering(boolean serverSideFiltering) {
+        this.serverSideFiltering = serverSideFiltering;
+    }
+
+    public int getDirectoryWalkerThreads() {
+        return directoryWalkerThreads;
+    }
+
+    public void setDirectoryWalkerThreads(int directoryWalkerThreads) {
+        this.directoryWalkerThreads = directoryWalkerThreads;
+    }
+
+    public boolean isWatch() {
+        return watch;
+    }
+
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    public long getWatchResyncInterval() {
+        return watchResyncInterval;
+    }
+
+    public void setWatchResyncInterval(long watchResyncInterval) {
+        this.watchResyncInterval = watchResyncInterval;
+    }
+
+    public int getListingCacheSize() {
+        return listingCacheSize;
+    }
+
+    public void setListingCacheSize(int listingCacheSize) {
+        this.listingCacheSize = listingCacheSize;
+    }
+
+    public long getListingCacheRefreshInterval() {
+        return listingCacheRefreshInterval;
+    }
+
+    public void setListingCacheRefreshInterval(long listingCacheRefreshInterval) {
+        this.listingCacheRefreshInterval = listingCacheRefreshInterval;
+    }
+
+    public boolean isReadLockAcrossPolls() {
+        return readLockAcrossPolls;
+    }
+
+    public void setReadLockAcrossPolls(boolean readLockAcrossPolls) {
+        this.readLockAcrossPolls = readLockAcrossPolls;
+    }
+
+    public boolean isAsyncProducer() {
+        return asyncProducer;
+    }
+
+    public void setAsyncProducer(boolean asyncProducer) {
+        this.asyncProducer = asyncProducer;
+    }
+
+    public long getDownloadMemoryThreshold() {
+        return downloadMemoryThreshold;
+    }
+
+    public void setDownloadMemoryThreshold(long downloadMemoryThreshold) {
+        this.downloadMemoryThreshold = downloadMemoryThreshold;
+    }
+
+    public int getCommitBatchSize() {
+        return commitBatchSize;
+    }
+
+    public void setCommitBatchSize(int commitBatchSize) {
+        this.commitBatchSize = commitBatchSize;
+    }
+
+    public int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    public void setPrefetchCount(int prefetchCount) {
+        this.prefetchCount = prefetchCount;
+    }
+
+    public long getPrefetchByteBudget() {
+        return prefetchByteBudget;
+    }
+
+    public void setPrefetchByteBudget(long prefetchByteBudget) {
+        this.prefetchByteBudget = prefetchByteBudget;
+    }
+
+    public int getConcurrentConsumers() {
+        return concurrentConsumers;
+    }
+
+    public void setConcurrentConsumers(int concurrentConsumers) {
+        this.concurrentConsumers = concurrentConsumers;
+    }
     //</editor-fold>
 }
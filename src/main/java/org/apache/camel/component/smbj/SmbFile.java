@@ -60,6 +60,34 @@ public class SmbFile {
 
     }
 
+    /**
+     * Creates a file whose parent directory has already been derived, e.g. from a sibling file, so the name is not split again.
+     *
+     * @param parentDirectory the parent directory as derived for a file of the same directory
+     * @param fileName        the name of the file without any path
+     * @see #getParentDirectory()
+     */
+    SmbFile(boolean isDirectory,
+            boolean isArchive,
+            boolean isHidden,
+            boolean isReadOnly,
+            boolean isSystem,
+            String parentDirectory,
+            String fileName,
+            long fileLength,
+            long lastModified) {
+        this.isDirectory = isDirectory;
+        this.isArchive = isArchive;
+        this.isHidden = isHidden;
+        this.isReadOnly = isReadOnly;
+        this.isSystem = isSystem;
+        this.fileLength = fileLength;
+        this.lastModified = lastModified;
+        this.parentDirectory = parentDirectory;
+        this.fileName = fileName;
+        this.fileNameFull = parentDirectory + File.separator + fileName;
+    }
+
     public boolean isDirectory() {
         return isDirectory;
     }
@@ -18,16 +18,22 @@ package org.apache.camel.component.smbj;
 
 
 import com.hierynomus.msdtyp.AccessMask;
-import com.hierynomus.msfscc.fileinformation.FileAllInformation;
+import com.hierynomus.mserref.NtStatus;
 import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.msfscc.fileinformation.FileStandardInformation;
 import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2CreateOptions;
 import com.hierynomus.mssmb2.SMB2ShareAccess;
-import com.hierynomus.smbj.SMBClient;
-import com.hierynomus.smbj.connection.Connection;
-import com.hierynomus.smbj.session.Session;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.mssmb2.copy.CopyChunkRequest;
+import com.hierynomus.mssmb2.copy.CopyChunkResponse;
+import com.hierynomus.smb.SMBBuffer;
+import com.hierynomus.smbj.common.SMBRuntimeException;
+import com.hierynomus.smbj.share.Directory;
 import com.hierynomus.smbj.share.DiskEntry;
 import com.hierynomus.smbj.share.DiskShare;
 import org.apache.camel.Exchange;
+import org.apache.camel.WrappedFile;
 import org.apache.camel.component.file.GenericFileEndpoint;
 import org.apache.camel.component.file.GenericFileExist;
 import org.apache.camel.component.file.GenericFileOperationFailedException;
@@ -38,12 +44,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.regex.Matcher;
-import java.util.stream.Collectors;
 
 /**
  * This class is the implementation of the interface {@link GenericFileOperations} for a CIFS/SMB share accessed via smbj.
@@ -53,16 +61,40 @@ import java.util.stream.Collectors;
  */
 public class SmbFileOperations implements GenericFileOperations<SmbFile> {
 
+    /**
+     * The exchange property holding the remote file resources of a streamed download, which are released in {@link #releaseRetrievedFileResources(Exchange)}
+     */
+    public static final String SMB_STREAMED_FILE_RESOURCE = "CamelSmbStreamedFileResource";
+    /**
+     * The exchange property holding the {@link SmbLockedFile} of the exclusive read lock, which is reused to retrieve the file
+     */
+    public static final String SMB_EXCLUSIVE_READ_LOCK = "CamelSmbExclusiveReadLock";
+    /**
+     * The suffix of the first path segment which addresses another share on the same server, e.g. 'archive:\done\file.txt' or '/archive:/done/file.txt'.
+     * The colon is not allowed in share, directory and file names, therefore such a segment cannot be mistaken for a directory.
+     */
+    public static final String SHARE_NAME_SUFFIX = ":";
+    private static final int FSCTL_SRV_REQUEST_RESUME_KEY = 0x00140078;
+    private static final int RESUME_KEY_LENGTH = 24;
+    // The limits of a copy chunk request which every server accepts, larger requests may be rejected with STATUS_INVALID_PARAMETER
+    static final int COPY_CHUNKS_PER_REQUEST = 16;
+    static final long COPY_CHUNK_SIZE = 1024 * 1024;
     private static final Logger LOG = LoggerFactory.getLogger(SmbFileOperations.class);
-    private final SMBClient client;
+    private final SmbDiskSharePool diskSharePool;
+    private final SmbSharedDiskShare asyncDiskShare;
+    private final ThreadLocal<Exchange> boundExchange = new ThreadLocal<>();
     private SmbConfiguration smbConfiguration;
+    private SmbBufferPool bufferPool;
+    private SmbMetadataOperations metadataOperations;
+    private volatile SmbDownloadPrefetcher downloadPrefetcher;
     private SmbEndpoint endpoint;
 
     /**
-     * @param client the configured smb client of smbj, which is used to access files on the smb share.
+     * @param diskSharePool the pool of disk shares, which are used to access files on the smb share.
      */
-    public SmbFileOperations(final SMBClient client) {
-        this.client = Objects.requireNonNull(client, "Cannot perform file operations with a null client");
+    public SmbFileOperations(final SmbDiskSharePool diskSharePool) {
+        this.diskSharePool = Objects.requireNonNull(diskSharePool, "Cannot perform file operations with a null disk share pool");
+        this.asyncDiskShare = new SmbSharedDiskShare(diskSharePool);
     }
 
     /**
@@ -72,7 +104,7 @@ public class SmbFileOperations implements GenericFileOperations<SmbFile> {
      * @param name the name to normalize
      * @return the normalized file name or path
      */
-    private static String normalizeFileNameOrPath(String name) {
+    static String normalizeFileNameOrPath(String name) {
         if (name.startsWith("\\") || name.startsWith("/")) {
             name = name.replaceFirst(Matcher.quoteReplacement("\\|/"), "");
         }
@@ -80,46 +112,88 @@ public class SmbFileOperations implements GenericFileOperations<SmbFile> {
     }
 
     /**
-     * Downloads the file to a new input stream which is located in memory.
+     * @param normalizedName the normalized file name or path
+     * @return the name of the share the name is prefixed with, or null if the name is located on the share of the endpoint
+     */
+    private static String shareNameOf(final String normalizedName) {
+        final int separator = normalizedName.indexOf('\\');
+        final String firstSegment = (separator < 0) ? normalizedName : normalizedName.substring(0, separator);
+        if (firstSegment.length() > SHARE_NAME_SUFFIX.length() && firstSegment.endsWith(SHARE_NAME_SUFFIX)) {
+            return firstSegment.substring(0, firstSegment.length() - SHARE_NAME_SUFFIX.length());
+        }
+        return null;
+    }
+
+    /**
+     * @param normalizedName the normalized file name or path
+     * @return the file name or path relative to the share it is located on
+     */
+    private static String pathOnShareOf(final String normalizedName) {
+        if (shareNameOf(normalizedName) == null) {
+            return normalizedName;
+        }
+        final int separator = normalizedName.indexOf('\\');
+        return (separator < 0) ? "" : normalizeFileNameOrPath(normalizedName.substring(separator));
+    }
+
+    /**
+     * Downloads the remote file with multiple read requests in flight into memory, as long as it does not exceed the threshold,
+     * otherwise into the spill file, and sets a stream on the downloaded content on the exchange object.
      *
-     * @param is       the input stream of the file to download
-     * @param exchange the exchange where to set the input stream of the downloaded file in the in.body
+     * @param spillFile     the local file to spill to, or null if the file must fit into memory
+     * @param threshold     the maximum number of bytes kept in memory
+     * @param file          the open remote file to download
+     * @param size          the expected size of the file, or a negative value if unknown
+     * @param configuration the configuration holding the chunk size and pipeline depth
+     * @param bufferPool    the pool to acquire the transfer buffers from
+     * @param exchange      the exchange where to set the input stream of the downloaded file in the in.body
+     * @throws GenericFileOperationFailedException if the download fails
      */
-    private static void downloadFileToMemoryAndCreateInputStream(final InputStream is,
+    private static void downloadFileToMemoryAndCreateInputStream(final Path spillFile,
+                                                                 final long threshold,
+                                                                 final com.hierynomus.smbj.share.File file,
+                                                                 final long size,
+                                                                 final SmbConfiguration configuration,
+                                                                 final SmbBufferPool bufferPool,
                                                                  final Exchange exchange) {
-        try (final ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            byte[] buffer = new byte[4096];
-            int len;
-            while ((len = is.read(buffer)) > -1) {
-                bos.write(buffer, 0, len);
+        try (final SmbSpillingDownloadSink sink = new SmbSpillingDownloadSink(spillFile, threshold, size)) {
+            new SmbPipelinedTransfer(file, configuration, bufferPool).download(sink, size);
+            if (sink.isSpilled()) {
+                exchange.getIn().setHeader(Exchange.FILE_LOCAL_WORK_PATH, spillFile.toFile());
             }
-            bos.flush();
-
-            exchange.getIn().setBody(new BufferedInputStream(new ByteArrayInputStream(bos.toByteArray())));
+            exchange.getIn().setBody(sink.openInputStream());
         } catch (Exception e) {
-            throw new GenericFileOperationFailedException("Could not download file: '%s'", e);
+            throw new GenericFileOperationFailedException(String.format("Could not download file: '%s'", file.getFileName()), e);
         }
     }
 
     /**
-     * Downloads the file represented by the input stream to a local directory and opens a stream to the new file and sets it on the exchange object.
+     * Downloads the remote file to a local directory with multiple read requests in flight
+     * and opens a stream to the new file and sets it on the exchange object.
      *
-     * @param tmpDirectory the tmp directory where to store the file
-     * @param name         the name of the file to download
-     * @param is           the input stream of the file to download
-     * @param exchange     the exchange where to set the input stream of the downloaded file in the in.body
+     * @param tmpDirectory  the tmp directory where to store the file
+     * @param name          the name of the file to download
+     * @param file          the open remote file to download
+     * @param size          the expected size of the file, or a negative value if unknown
+     * @param configuration the configuration holding the chunk size and pipeline depth
+     * @param bufferPool    the pool to acquire the transfer buffers from
+     * @param exchange      the exchange where to set the input stream of the downloaded file in the in.body
      * @throws GenericFileOperationFailedException if the download fails
      */
     private static void downloadFileToTmpAndCreateInputStream(final String tmpDirectory,
                                                               final String name,
-                                                              final InputStream is,
+                                                              final com.hierynomus.smbj.share.File file,
+                                                              final long size,
+                                                              final SmbConfiguration configuration,
+                                                              final SmbBufferPool bufferPool,
                                                               final Exchange exchange) {
         try {
             Path tmpFile = Paths.get(tmpDirectory, name);
             Files.createDirectories(tmpFile.getParent());
             Files.deleteIfExists(tmpFile);
-            Files.copy(is, tmpFile);
-            is.close();
+            try (final FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                new SmbPipelinedTransfer(file, configuration, bufferPool).download(channel, size);
+            }
 
             exchange.getIn().setHeader(Exchange.FILE_LOCAL_WORK_PATH, tmpFile.toFile());
             exchange.getIn().setBody(new BufferedInputStream(Files.newInputStream(tmpFile)));
@@ -158,55 +232,37 @@ public class SmbFileOperations implements GenericFileOperations<SmbFile> {
                            info.getChangeTime().toEpochMillis());
     }
 
+    @Override
+    public void setEndpoint(GenericFileEndpoint<SmbFile> endpoint) {
+        this.endpoint = (SmbEndpoint) Objects.requireNonNull(endpoint, "Endpoint must not be null");
+        this.smbConfiguration = (SmbConfiguration) Objects.requireNonNull(endpoint.getConfiguration(), "Cannot perform file operations with a null smb configuration");
+        this.bufferPool = this.endpoint.getComponent().getBufferPool();
+        this.metadataOperations = new SmbMetadataOperations(smbConfiguration);
+    }
+
     /**
-     * Maps the file information to the smb file model
+     * Binds the exchange which is processed by the current thread, so the file operations of its begin and commit reuse the disk share
+     * held by its exclusive read lock or streamed download, instead of borrowing another disk share from the pool while holding one.
      *
-     * @param path the path he file has been listed from
-     * @param info the file info of the listed file
-     * @return the mapped smb file model object
-     * @see SmbFile
-     * @see FileAllInformation
+     * @param exchange the exchange which is processed by the current thread, or null to unbind the exchange
      */
-    private static SmbFile mapFileInformationToSmbFile(final String path,
-                                                       final FileAllInformation info) {
-        final long attributes = info.getBasicInformation().getFileAttributes();
-        final boolean directory = SmbFileAttributeUtils.isDirectory(attributes);
-        final String pathPrefix = (path.isEmpty()) ? path : (path + "\\");
-        final long fileSize;
-        if (directory) {
-            fileSize = 0;
+    public void bindExchange(final Exchange exchange) {
+        if (exchange == null) {
+            boundExchange.remove();
         } else {
-            fileSize = info.getStandardInformation().getEndOfFile();
+            boundExchange.set(exchange);
         }
-        return new SmbFile(directory,
-                           SmbFileAttributeUtils.isArchive(attributes),
-                           SmbFileAttributeUtils.isHidden(attributes),
-                           SmbFileAttributeUtils.isReadOnly(attributes),
-                           SmbFileAttributeUtils.isSystem(attributes),
-                           normalizeFileNameOrPath(pathPrefix + info.getNameInformation()),
-                           fileSize,
-                           info.getBasicInformation().getChangeTime().toEpochMillis());
-    }
-
-    @Override
-    public void setEndpoint(GenericFileEndpoint<SmbFile> endpoint) {
-        this.endpoint = (SmbEndpoint) Objects.requireNonNull(endpoint, "Endpoint must not be null");
-        this.smbConfiguration = (SmbConfiguration) Objects.requireNonNull(endpoint.getConfiguration(), "Cannot perform file operations with a null smb configuration");
     }
 
     @Override
     public boolean deleteFile(final String name) throws GenericFileOperationFailedException {
         final String normalizedName = normalizeFileNameOrPath(name);
+        final String path = pathOnShareOf(normalizedName);
         try {
-            return invokeOnDiskShare(share -> {
-                if (share.fileExists(normalizedName)) {
-                    share.rm(normalizedName);
-                    return true;
-                }
-                return false;
-            });
+            // A missing file is detected by the create, which deletes the file on close
+            return invokeOnDiskShare(shareNameOf(normalizedName), share -> metadataOperations.delete(share, path));
         } catch (Exception e) {
-            throw new GenericFileOperationFailedException(String.format("Could not delete file '%s'", normalizedName));
+            throw new GenericFileOperationFailedException(String.format("Could not delete file '%s'", normalizedName), e);
         }
     }
 
@@ -214,9 +270,9 @@ public class SmbFileOperations implements GenericFileOperations<SmbFile> {
     public boolean existsFile(final String name) throws GenericFileOperationFailedException {
         final String normalizedName = normalizeFileNameOrPath(name);
         try {
-            return invokeOnDiskShare(share -> share.fileExists(normalizedName));
+            return invokeOnDiskShare(shareNameOf(normalizedName), share -> metadataOperations.exists(share, pathOnShareOf(normalizedName)));
         } catch (Exception e) {
-            throw new GenericFileOperationFailedException(String.format("Could not delete file '%s'", normalizedName));
+            throw new GenericFileOperationFailedException(String.format("Could not check existence of file '%s'", normalizedName), e);
         }
     }
 
@@ -225,13 +281,27 @@ public class SmbFileOperations implements GenericFileOperations<SmbFile> {
                               final String to) throws GenericFileOperationFailedException {
         final String normalizedFrom = normalizeFileNameOrPath(from);
         final String normalizedTo = normalizeFileNameOrPath(to);
+        final String fromShare = Optional.ofNullable(shareNameOf(normalizedFrom)).orElse(smbConfiguration.getShare());
+        final String toShare = Optional.ofNullable(shareNameOf(normalizedTo)).orElse(smbConfiguration.getShare());
         try {
-            return invokeOnDiskShare(share -> {
-                if (share.fileExists(normalizedFrom)) {
-                    openWritableFile(share, normalizedFrom).rename(normalizedTo, true);
-                    return true;
+            if (!fromShare.equalsIgnoreCase(toShare)) {
+                return invokeOnDiskShare(fromShare, share -> moveToShare(share, pathOnShareOf(normalizedFrom), toShare, pathOnShareOf(normalizedTo)));
+            }
+            return invokeOnDiskShare(fromShare, share -> {
+                // A missing file is detected by the create, instead of checking its existence upfront
+                final DiskEntry entry;
+                try {
+                    entry = openRenamableFile(share, pathOnShareOf(normalizedFrom));
+                } catch (SMBApiException e) {
+                    if (e.getStatus() == NtStatus.STATUS_OBJECT_NAME_NOT_FOUND || e.getStatus() == NtStatus.STATUS_OBJECT_PATH_NOT_FOUND) {
+                        return false;
+                    }
+                    throw e;
                 }
-                return false;
+                try (final DiskEntry openEntry = entry) {
+                    openEntry.rename(pathOnShareOf(normalizedTo), true);
+                }
+                return true;
             });
         } catch (Exception e) {
             throw new GenericFileOperationFailedException(String.format("Could not rename file from '%s' to '%s'", normalizedFrom, normalizedTo), e);
@@ -241,69 +311,159 @@ public class SmbFileOperations implements GenericFileOperations<SmbFile> {
 
     @Override
     public void releaseRetrievedFileResources(Exchange exchange) throws GenericFileOperationFailedException {
-        // INFO: Nothing to do
+        final StreamedFileResource resource = (StreamedFileResource) exchange.removeProperty(SMB_STREAMED_FILE_RESOURCE);
+        if (resource != null) {
+            resource.close();
+        }
     }
 
     @Override
     public boolean storeFile(final String name,
                              final Exchange exchange,
                              final long size) throws GenericFileOperationFailedException {
-        boolean append = false;
         final String normalizedName = normalizeFileNameOrPath(name);
+        final GenericFileExist fileExist = endpoint.getFileExist();
 
-        if (existsFile(normalizedName)) {
-            if (endpoint.getFileExist() == GenericFileExist.Ignore) {
-                // ignore but indicate that the file was written
-                LOG.debug(String.format("An existing file already exists: '%s'. Ignore and do not override it.", normalizedName));
-                return false;
-            } else if (endpoint.getFileExist() == GenericFileExist.Fail) {
-                throw new GenericFileOperationFailedException(String.format("File already exist: '%s'. Cannot write new file.", normalizedName));
-            } else if (endpoint.getFileExist() == GenericFileExist.Move) {
-                // move any existing file first
-                doMoveExistingFile(normalizedName);
-            } else if (endpoint.isEagerDeleteTargetFile() && endpoint.getFileExist() == GenericFileExist.Override) {
-                // we override the target so we do this by deleting it so the
-                // temp file can be renamed later
-                // with success as the existing target file have been deleted
-                LOG.debug("Eagerly deleting existing file: " + normalizedName);
-                if (!deleteFile(normalizedName)) {
-                    throw new GenericFileOperationFailedException(String.format("Cannot delete file: '%s'", normalizedName));
-                }
-            } else if (endpoint.getFileExist() == GenericFileExist.Append) {
-                append = true;
-            }
+        // Only moving an existing file requires to know upfront whether it exists, all other strategies are handled
+        // by the create disposition. Eagerly deleting the target of a temp file is done by the producer itself.
+        if (fileExist == GenericFileExist.Move && existsFile(normalizedName)) {
+            doMoveExistingFile(normalizedName);
         }
 
-        final boolean appendContent = append;
-
+        final SMB2CreateDisposition disposition = toCreateDisposition(fileExist);
         try {
-            return invokeOnDiskShare(share -> {
-                final DiskEntry entry = openWritableFile(share, normalizedName);
-                if (!entry.getFileInformation().getStandardInformation().isDirectory()) {
-                    final com.hierynomus.smbj.share.File file = (com.hierynomus.smbj.share.File) entry;
-                    try (BufferedInputStream bis = new BufferedInputStream(exchange.getMessage().getMandatoryBody(InputStream.class))) {
-                        try (final BufferedOutputStream bos = new BufferedOutputStream(file.getOutputStream(appendContent))) {
-                            byte[] data = new byte[512 * 1024];
-                            int dataSize;
-                            while ((dataSize = bis.read(data)) != -1) {
-                                bos.write(data, 0, dataSize);
-                            }
-                            bos.flush();
-                            file.rename(normalizedName);
-                            return true;
-                        }
-                    } catch (Exception e) {
-                        throw e;
-                    }
-                } else {
-                    throw new GenericFileOperationFailedException(String.format("Could not store file, because it is a directory '%s'", normalizedName));
+            // The body stream may already be consumed when the operation fails, so it cannot be retried
+            return invokeOnDiskShare(false, share -> {
+                final com.hierynomus.smbj.share.File file;
+                try {
+                    file = openWritableFile(share, normalizedName, disposition);
+                } catch (SMBApiException e) {
+                    handleStoreOpenFailure(e, normalizedName, fileExist);
+                    return true;
+                }
+                try {
+                    final long offset = (fileExist == GenericFileExist.Append) ? file.getFileInformation(FileStandardInformation.class).getEndOfFile() : 0;
+                    uploadBody(new SmbPipelinedTransfer(file, smbConfiguration, bufferPool), exchange, offset);
+                    return true;
+                } finally {
+                    file.close();
                 }
             });
+        } catch (GenericFileOperationFailedException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new GenericFileOperationFailedException(String.format("Could not store file '%s'", normalizedName), e);
+        }
+    }
+
+    /**
+     * Starts storing the body of the exchange without waiting for any response, which is supported for bodies which are
+     * a local file, a byte array, a byte buffer or convertible to a byte array, and for the strategies for existing files
+     * which are resolved by the create disposition alone. All stores in flight send their requests over a single shared disk share,
+     * so their number is not limited by the pool, and a disk share is only borrowed if no store is in flight.
+     *
+     * @param name     the name of the file to store
+     * @param exchange the exchange holding the body
+     * @return the started store, which must be polled until it is complete
+     * @throws GenericFileOperationFailedException if the store could not be started
+     */
+    public SmbAsyncFileStore storeFileAsync(final String name,
+                                            final Exchange exchange) throws GenericFileOperationFailedException {
+        final String normalizedName = normalizeFileNameOrPath(name);
+        final GenericFileExist fileExist = endpoint.getFileExist();
+        if (fileExist != GenericFileExist.Override && fileExist != GenericFileExist.Fail && fileExist != GenericFileExist.Ignore) {
+            throw new GenericFileOperationFailedException(String.format("Cannot store file '%s' asynchronously with fileExist=%s", normalizedName, fileExist));
+        }
+        final DiskShare share = asyncDiskShare.acquire();
+        try {
+            final Object body = exchange.getMessage().getBody();
+            final Object wrapped = (body instanceof WrappedFile) ? ((WrappedFile<?>) body).getFile() : body;
+            if (wrapped instanceof File) {
+                return new SmbAsyncFileStore(asyncDiskShare, share, normalizedName, fileExist, FileChannel.open(((File) wrapped).toPath(), StandardOpenOption.READ), smbConfiguration, bufferPool);
+            } else if (body instanceof ByteBuffer) {
+                return new SmbAsyncFileStore(asyncDiskShare, share, normalizedName, fileExist, (ByteBuffer) body, smbConfiguration, bufferPool);
+            }
+            final byte[] data = (body instanceof byte[]) ? (byte[]) body : exchange.getMessage().getMandatoryBody(byte[].class);
+            return new SmbAsyncFileStore(asyncDiskShare, share, normalizedName, fileExist, ByteBuffer.wrap(data), smbConfiguration, bufferPool);
         } catch (Exception e) {
+            asyncDiskShare.release(share, e);
             throw new GenericFileOperationFailedException(String.format("Could not store file '%s'", normalizedName), e);
         }
     }
 
+    /**
+     * Handles the failure of opening a file to store it according to the strategy for existing files.
+     *
+     * @param error     the failure of opening the file
+     * @param name      the normalized name of the file
+     * @param fileExist the strategy for existing files
+     * @throws GenericFileOperationFailedException if the file already exists or is a directory, unless existing files are ignored,
+     *                                             which is indicated by returning normally
+     * @throws SMBApiException                     if opening the file failed otherwise
+     */
+    static void handleStoreOpenFailure(final SMBApiException error,
+                                       final String name,
+                                       final GenericFileExist fileExist) throws GenericFileOperationFailedException {
+        if (error.getStatus() == NtStatus.STATUS_OBJECT_NAME_COLLISION && fileExist == GenericFileExist.Ignore) {
+            // ignore but indicate that the file was written
+            LOG.debug(String.format("An existing file already exists: '%s'. Ignore and do not override it.", name));
+            return;
+        } else if (error.getStatus() == NtStatus.STATUS_OBJECT_NAME_COLLISION) {
+            throw new GenericFileOperationFailedException(String.format("File already exist: '%s'. Cannot write new file.", name));
+        } else if (error.getStatus() == NtStatus.STATUS_FILE_IS_A_DIRECTORY) {
+            throw new GenericFileOperationFailedException(String.format("Could not store file, because it is a directory '%s'", name));
+        }
+        throw error;
+    }
+
+    /**
+     * Maps the strategy for existing files onto the create disposition, so the server resolves an existing file
+     * within the create request.
+     *
+     * @param fileExist the strategy for existing files
+     * @return the create disposition to open the file with
+     */
+    static SMB2CreateDisposition toCreateDisposition(final GenericFileExist fileExist) {
+        switch (fileExist) {
+            case Fail:
+            case Ignore:
+                return SMB2CreateDisposition.FILE_CREATE;
+            case Append:
+                return SMB2CreateDisposition.FILE_OPEN_IF;
+            default:
+                return SMB2CreateDisposition.FILE_OVERWRITE_IF;
+        }
+    }
+
+    /**
+     * Uploads the body of the exchange. Bodies backed by a local file, a byte array or a byte buffer are handed to the
+     * transfer directly, all other bodies are converted to a stream.
+     *
+     * @param transfer the transfer of the remote file to upload to
+     * @param exchange the exchange holding the body
+     * @param offset   the offset in the remote file to start writing at
+     * @throws Exception if the body could not be converted or the upload fails
+     */
+    private void uploadBody(final SmbPipelinedTransfer transfer,
+                            final Exchange exchange,
+                            final long offset) throws Exception {
+        final Object body = exchange.getMessage().getBody();
+        final Object wrapped = (body instanceof WrappedFile) ? ((WrappedFile<?>) body).getFile() : body;
+        if (wrapped instanceof File) {
+            try (final FileChannel channel = FileChannel.open(((File) wrapped).toPath(), StandardOpenOption.READ)) {
+                transfer.upload(channel, offset);
+            }
+        } else if (body instanceof byte[]) {
+            transfer.upload(ByteBuffer.wrap((byte[]) body), offset);
+        } else if (body instanceof ByteBuffer) {
+            transfer.upload((ByteBuffer) body, offset);
+        } else {
+            try (final InputStream is = exchange.getMessage().getMandatoryBody(InputStream.class)) {
+                transfer.upload(is, offset);
+            }
+        }
+    }
+
     @Override
     public String getCurrentDirectory() throws GenericFileOperationFailedException {
         throw new UnsupportedOperationException("Cannot get current directory on a smb share");
@@ -326,47 +486,187 @@ public class SmbFileOperations implements GenericFileOperations<SmbFile> {
 
     @Override
     public List<SmbFile> listFiles(final String path) throws GenericFileOperationFailedException {
+        return listFiles(path, null);
+    }
+
+    /**
+     * Lists the files of the given path, whereby the server only returns the directory entries matching the search pattern.
+     * If the path denotes a file, then the file is returned regardless of the search pattern.
+     *
+     * @param path          the path of the directory or file to list
+     * @param searchPattern the search pattern which may contain the wildcards '*' and '?', or null to list all entries
+     * @return the listed files, which are a {@link SmbDirectorySnapshot} if the path denotes a directory
+     * @throws GenericFileOperationFailedException if the path could not be listed
+     */
+    public List<SmbFile> listFiles(final String path,
+                                   final String searchPattern) throws GenericFileOperationFailedException {
         final String normalizedPath = normalizeFileNameOrPath(path);
         try {
             return invokeOnDiskShare(share -> {
-                if (!share.fileExists(normalizedPath) && !share.folderExists(normalizedPath)) {
-                    return Collections.emptyList();
+                // A single create tells whether the path is missing, a file or a directory
+                final DiskEntry entry;
+                try {
+                    entry = share.open(normalizedPath,
+                                       EnumSet.of(AccessMask.GENERIC_READ),
+                                       null,
+                                       SMB2ShareAccess.ALL,
+                                       SMB2CreateDisposition.FILE_OPEN,
+                                       null);
+                } catch (SMBApiException e) {
+                    if (e.getStatus() == NtStatus.STATUS_OBJECT_NAME_NOT_FOUND || e.getStatus() == NtStatus.STATUS_OBJECT_PATH_NOT_FOUND) {
+                        return Collections.<SmbFile>emptyList();
+                    }
+                    throw e;
                 }
                 // Lock strategy wants to list files with filename, which is not supported by smbj
-                if (share.fileExists(normalizedPath)) {
-                    final FileAllInformation info = share.getFileInformation(normalizedPath, FileAllInformation.class);
-                    return Collections.singletonList(mapFileInformationToSmbFile(normalizedPath, info));
+                if (!(entry instanceof Directory)) {
+                    // The close returns the attributes, so the file does not need to be queried
+                    return Collections.singletonList(metadataOperations.closeAndDescribe(share, entry.getFileId(), normalizedPath));
                 }
-
-                return share.list(normalizedPath).stream()
-                            // Exclude Linux . and .. directories
-                            .filter(entry -> !entry.getFileName().equals("."))
-                            .filter(entry -> !entry.getFileName().equals(".."))
-                            .map(info -> mapFileInformationToSmbFile(normalizedPath, info))
-                            .collect(Collectors.toList());
+                // The entries are collected into a snapshot page by page, so neither the directory information nor smb files are retained for them
+                final SmbDirectorySnapshot.Builder snapshot = new SmbDirectorySnapshot.Builder(normalizedPath);
+                try (final DiskEntry openEntry = entry) {
+                    ((Directory) openEntry).iterator(FileIdBothDirectoryInformation.class, searchPattern).forEachRemaining(info -> {
+                        // Exclude Linux . and .. directories
+                        if (!info.getFileName().equals(".") && !info.getFileName().equals("..")) {
+                            final long attributes = info.getFileAttributes();
+                            snapshot.add(info.getFileName(),
+                                         attributes,
+                                         SmbFileAttributeUtils.isDirectory(attributes) ? 0 : info.getEndOfFile(),
+                                         info.getChangeTime().toEpochMillis());
+                        }
+                    });
+                }
+                return snapshot.build();
             });
         } catch (Exception e) {
             throw new GenericFileOperationFailedException(String.format("Could not list files for path: '%s'", normalizedPath), e);
         }
     }
 
+    /**
+     * Iterates the files of the given path page by page, so the iteration can be stopped early without enumerating the whole directory.
+     * The returned iterator holds the directory open and the disk share borrowed until it is closed.
+     *
+     * @param path          the path of the directory or file to list
+     * @param searchPattern the search pattern which may contain the wildcards '*' and '?', or null to list all entries
+     * @return the iterator over the listed files, which must be closed
+     * @throws GenericFileOperationFailedException if the path could not be opened
+     */
+    public SmbDirectoryIterator iterateFiles(final String path,
+                                             final String searchPattern) throws GenericFileOperationFailedException {
+        final String normalizedPath = normalizeFileNameOrPath(path);
+        final DiskShare share = diskSharePool.borrow();
+        try {
+            final DiskEntry entry;
+            try {
+                entry = share.open(normalizedPath,
+                                   EnumSet.of(AccessMask.GENERIC_READ),
+                                   null,
+                                   SMB2ShareAccess.ALL,
+                                   SMB2CreateDisposition.FILE_OPEN,
+                                   null);
+            } catch (SMBApiException e) {
+                if (e.getStatus() == NtStatus.STATUS_OBJECT_NAME_NOT_FOUND || e.getStatus() == NtStatus.STATUS_OBJECT_PATH_NOT_FOUND) {
+                    diskSharePool.release(share);
+                    return SmbDirectoryIterator.empty(normalizedPath);
+                }
+                throw e;
+            }
+            if (!(entry instanceof Directory)) {
+                final SmbFile file = metadataOperations.closeAndDescribe(share, entry.getFileId(), normalizedPath);
+                diskSharePool.release(share);
+                return new SmbDirectoryIterator(normalizedPath, Collections.singletonList(file));
+            }
+            try {
+                return new SmbDirectoryIterator(diskSharePool, share, (Directory) entry, normalizedPath, searchPattern, SmbFileOperations::mapFileInformationToSmbFile);
+            } catch (RuntimeException e) {
+                entry.closeSilently();
+                throw e;
+            }
+        } catch (Exception e) {
+            if (SmbDiskSharePool.isConnectionFailure(e)) {
+                diskSharePool.invalidate(share);
+            } else {
+                diskSharePool.release(share);
+            }
+            throw new GenericFileOperationFailedException(String.format("Could not list files for path: '%s'", normalizedPath), e);
+        }
+    }
+
+
+    /**
+     * Gets the file or directory with the given path by a single create and close, whereby the close returns the attributes.
+     *
+     * @param path the path of the file or directory
+     * @return the file or directory, or null if it does not exist
+     * @throws GenericFileOperationFailedException if the path could not be queried
+     */
+    public SmbFile getFile(final String path) throws GenericFileOperationFailedException {
+        final String normalizedPath = normalizeFileNameOrPath(path);
+        try {
+            return invokeOnDiskShare(share -> metadataOperations.getFile(share, normalizedPath));
+        } catch (Exception e) {
+            throw new GenericFileOperationFailedException(String.format("Could not get file '%s'", normalizedPath), e);
+        }
+    }
+
+    /**
+     * Commits the moves and deletes of processed files. The parent directories of the move targets are built once per batch,
+     * and the files on the share of the endpoint are committed with pipelined requests over a single pooled disk share.
+     * Files addressing another share are committed one by one.
+     *
+     * @param entries the moves and deletes to commit
+     * @return the failures by entry, which is empty if all entries have been committed
+     */
+    public Map<SmbCommitBatch.Entry, Exception> commitBatch(final List<SmbCommitBatch.Entry> entries) {
+        final Map<SmbCommitBatch.Entry, Exception> failures = new LinkedHashMap<>();
+        final Map<String, Boolean> builtDirectories = new HashMap<>();
+        final List<SmbCommitBatch.Entry> pipelined = new ArrayList<>(entries.size());
+        for (final SmbCommitBatch.Entry entry : entries) {
+            if (!entry.isDelete()) {
+                final String directory = new File(FileUtil.normalizePath(entry.getTo())).getParent();
+                try {
+                    if (directory != null && !builtDirectories.computeIfAbsent(directory, name -> buildDirectory(name, true))) {
+                        throw new GenericFileOperationFailedException(String.format("Cannot create directory '%s'", directory));
+                    }
+                } catch (Exception e) {
+                    failures.put(entry, e);
+                    continue;
+                }
+            }
+            if (shareNameOf(entry.getFrom()) == null && (entry.isDelete() || shareNameOf(entry.getTo()) == null)) {
+                pipelined.add(entry);
+                continue;
+            }
+            try {
+                if (entry.isDelete()) {
+                    deleteFile(entry.getFrom());
+                } else if (!renameFile(entry.getFrom(), entry.getTo())) {
+                    throw new GenericFileOperationFailedException(String.format("Cannot rename file from '%s' to '%s'", entry.getFrom(), entry.getTo()));
+                }
+            } catch (Exception e) {
+                failures.put(entry, e);
+            }
+        }
+        if (!pipelined.isEmpty()) {
+            try {
+                // Not retried, because a retry would report the files which have already been committed as missing
+                failures.putAll(invokeOnDiskShare(false, share -> metadataOperations.commitAll(share, pipelined)));
+            } catch (Exception e) {
+                pipelined.forEach(entry -> failures.putIfAbsent(entry, e));
+            }
+        }
+        return failures;
+    }
 
     @Override
     public boolean buildDirectory(final String directory,
                                   final boolean absolute) throws GenericFileOperationFailedException {
         final String normalizedDirectory = normalizeFileNameOrPath(directory);
         try {
-            return invokeOnDiskShare(share -> {
-                final String[] directories = normalizedDirectory.split(Matcher.quoteReplacement("\\"));
-                String buildDirectory = "";
-                for (final String part : directories) {
-                    if (!part.isEmpty()) {
-                        buildDirectory += (buildDirectory.isEmpty()) ? part : ("\\" + part);
-                        if (!share.folderExists(buildDirectory)) {
-                            share.mkdir(buildDirectory);
-                        }
-                    }
-                }
+            return invokeOnDiskShare(shareNameOf(normalizedDirectory), share -> {
+                buildDirectory(share, pathOnShareOf(normalizedDirectory));
                 return true;
             });
         } catch (Exception e) {
@@ -379,23 +679,48 @@ public class SmbFileOperations implements GenericFileOperations<SmbFile> {
                                 final Exchange exchange,
                                 final long size) throws GenericFileOperationFailedException {
         final String normalizedName = normalizeFileNameOrPath(name);
+        final boolean streamDownload = endpoint.isStreamDownload() && Optional.ofNullable(endpoint.getLocalWorkDirectory()).orElse("").trim().isEmpty();
+        final SmbLockedFile lockedFile = exchange.getProperty(SMB_EXCLUSIVE_READ_LOCK, SmbLockedFile.class);
+        if (lockedFile != null && lockedFile.getPath().equals(normalizedName)) {
+            // The file is already open for the read lock, which is released after the exchange is done
+            if (streamDownload) {
+                final StreamedFileResource resource = new StreamedFileResource(lockedFile.getFile());
+                exchange.setProperty(SMB_STREAMED_FILE_RESOURCE, resource);
+                exchange.getIn().setBody(resource.getInputStream());
+            } else {
+                downloadFile(name, lockedFile.getFile(), size, exchange);
+            }
+            return true;
+        }
+        if (streamDownload) {
+            return retrieveFileAsStream(normalizedName, exchange);
+        }
+        final SmbDownloadPrefetcher prefetcher = downloadPrefetcher;
+        if (prefetcher != null) {
+            final InputStream prefetched = prefetcher.take(normalizedName);
+            if (prefetched != null) {
+                exchange.getIn().setBody(prefetched);
+                return true;
+            }
+        }
         try {
             return invokeOnDiskShare(share -> {
-                if (share.fileExists(normalizedName)) {
-                    final DiskEntry entry = openReadOnlyFile(share, normalizedName);
-                    final com.hierynomus.smbj.share.File file = (com.hierynomus.smbj.share.File) entry;
-                    // Download file to memory
-                    if (Optional.ofNullable(endpoint.getLocalWorkDirectory()).orElse("").trim().isEmpty()) {
-                        downloadFileToMemoryAndCreateInputStream(file.getInputStream(), exchange);
-                    }
-                    // Download file to temporary directory and return file
-                    else {
-                        final String actualTmpDir = endpoint.getLocalWorkDirectory() + File.separator + endpoint.getId();
-                        downloadFileToTmpAndCreateInputStream(actualTmpDir, name, file.getInputStream(), exchange);
+                // Opening the file tells whether it exists, so it is not checked upfront
+                final DiskEntry entry;
+                try {
+                    entry = openReadOnlyFile(share, normalizedName);
+                } catch (SMBApiException e) {
+                    if (e.getStatus() == NtStatus.STATUS_OBJECT_NAME_NOT_FOUND || e.getStatus() == NtStatus.STATUS_OBJECT_PATH_NOT_FOUND) {
+                        return false;
                     }
-                    return true;
+                    throw e;
                 }
-                return false;
+                try {
+                    downloadFile(name, (com.hierynomus.smbj.share.File) entry, size, exchange);
+                } finally {
+                    entry.close();
+                }
+                return true;
             });
         } catch (Exception e) {
             throw new GenericFileOperationFailedException(String.format("Could not retrieve file '%s'", normalizedName), e);
@@ -403,50 +728,160 @@ public class SmbFileOperations implements GenericFileOperations<SmbFile> {
     }
 
     /**
-     * Creates a connection to the smb share
+     * Downloads a file into memory, which is used to prefetch the upcoming files of a poll.
+     *
+     * @param name    the name of the file
+     * @param maxSize the maximum size of the file, whereby the download fails if the file has grown beyond it
+     * @return the stream on the downloaded content, or null if the file does not exist
+     * @throws Exception if the download fails
+     */
+    InputStream downloadToMemory(final String name,
+                                 final long maxSize) throws Exception {
+        final String normalizedName = normalizeFileNameOrPath(name);
+        return invokeOnDiskShare(share -> {
+            final DiskEntry entry;
+            try {
+                entry = openReadOnlyFile(share, normalizedName);
+            } catch (SMBApiException e) {
+                if (e.getStatus() == NtStatus.STATUS_OBJECT_NAME_NOT_FOUND || e.getStatus() == NtStatus.STATUS_OBJECT_PATH_NOT_FOUND) {
+                    return null;
+                }
+                throw e;
+            }
+            try (final SmbSpillingDownloadSink sink = new SmbSpillingDownloadSink(null, maxSize, -1)) {
+                new SmbPipelinedTransfer((com.hierynomus.smbj.share.File) entry, smbConfiguration, bufferPool).download(sink, -1);
+                return sink.openInputStream();
+            } finally {
+                entry.close();
+            }
+        });
+    }
+
+    /**
+     * @param downloadPrefetcher the prefetcher to take the retrieved files from, or null to disable prefetching
+     */
+    public void setDownloadPrefetcher(final SmbDownloadPrefetcher downloadPrefetcher) {
+        this.downloadPrefetcher = downloadPrefetcher;
+    }
+
+    /**
+     * Downloads the open file into memory, or into the local work directory if configured,
+     * whereby files up to the download memory threshold are still downloaded into memory.
+     *
+     * @param name     the name of the file
+     * @param file     the open file to download
+     * @param size     the expected size of the file, or a negative value if unknown
+     * @param exchange the exchange where to set the input stream of the downloaded file in the in.body
+     */
+    private void downloadFile(final String name,
+                              final com.hierynomus.smbj.share.File file,
+                              final long size,
+                              final Exchange exchange) {
+        // Download file to memory
+        if (Optional.ofNullable(endpoint.getLocalWorkDirectory()).orElse("").trim().isEmpty()) {
+            downloadFileToMemoryAndCreateInputStream(null, Long.MAX_VALUE, file, size, smbConfiguration, bufferPool, exchange);
+            return;
+        }
+        final String actualTmpDir = endpoint.getLocalWorkDirectory() + File.separator + endpoint.getId();
+        // Download small files to memory and spill large ones to the temporary directory
+        if (endpoint.getDownloadMemoryThreshold() > 0) {
+            downloadFileToMemoryAndCreateInputStream(Paths.get(actualTmpDir, name), endpoint.getDownloadMemoryThreshold(), file, size, smbConfiguration, bufferPool, exchange);
+        }
+        // Download file to temporary directory and return file
+        else {
+            downloadFileToTmpAndCreateInputStream(actualTmpDir, name, file, size, smbConfiguration, bufferPool, exchange);
+        }
+    }
+
+    /**
+     * Opens the file without sharing write access, which fails as long as someone else has it open for writing,
+     * and keeps it open until the returned locked file gets closed. Reading and deletion are shared,
+     * so the file can still be retrieved, moved or deleted while it is locked.
      *
-     * @return the created connection
+     * @param name the name of the file to lock
+     * @return the locked file, or null if the file is in use by a writer or does not exist
+     * @throws GenericFileOperationFailedException if the file could not be opened for another reason
      */
-    private Connection createConnection() {
+    public SmbLockedFile lockFile(final String name) throws GenericFileOperationFailedException {
+        final String normalizedName = normalizeFileNameOrPath(name);
+        final DiskShare share = diskSharePool.borrow();
         try {
-            if (endpoint.getConfiguration().getPort() == null) {
-                return client.connect(endpoint.getConfiguration().getHost());
-            } else {
-                return client.connect(endpoint.getConfiguration().getHost(), endpoint.getConfiguration().getPort());
+            final com.hierynomus.smbj.share.File file = share.openFile(normalizedName,
+                                                                       EnumSet.of(AccessMask.GENERIC_READ),
+                                                                       null,
+                                                                       EnumSet.of(SMB2ShareAccess.FILE_SHARE_READ, SMB2ShareAccess.FILE_SHARE_DELETE),
+                                                                       SMB2CreateDisposition.FILE_OPEN,
+                                                                       EnumSet.of(SMB2CreateOptions.FILE_NON_DIRECTORY_FILE));
+            return new SmbLockedFile(diskSharePool, share, file, normalizedName);
+        } catch (SMBApiException e) {
+            if (e.getStatus() == NtStatus.STATUS_SHARING_VIOLATION
+                    || e.getStatus() == NtStatus.STATUS_OBJECT_NAME_NOT_FOUND
+                    || e.getStatus() == NtStatus.STATUS_OBJECT_PATH_NOT_FOUND) {
+                LOG.trace(String.format("Could not lock file '%s', due to '%s'", normalizedName, e.getStatus()));
+                diskSharePool.release(share);
+                return null;
             }
-        } catch (IOException e) {
-            throw new GenericFileOperationFailedException("Could not create connection", e);
+            releaseOrInvalidate(share, e);
+            throw new GenericFileOperationFailedException(String.format("Could not lock file '%s'", normalizedName), e);
+        } catch (Exception e) {
+            releaseOrInvalidate(share, e);
+            throw new GenericFileOperationFailedException(String.format("Could not lock file '%s'", normalizedName), e);
         }
     }
 
     /**
-     * Creates a session for the given connection and authenticates the user
+     * Retrieves the file by binding an input stream of the still open remote file to the in.body, so the file content is never held in memory.
+     * The file handle and the borrowed disk share are released in {@link #releaseRetrievedFileResources(Exchange)}.
      *
-     * @param connection the connection for creating the session
-     * @return the created session
+     * @param normalizedName the normalized name of the file to retrieve
+     * @param exchange       the exchange where to set the input stream of the remote file in the in.body
+     * @return true if the file has been opened, false if it does not exist
+     * @throws GenericFileOperationFailedException if the file cannot be opened
      */
-    private Session createSession(final Connection connection) {
-        if (smbConfiguration.isNtlmAuthentication()) {
-            return connection.authenticate(smbConfiguration.createAuthenticationContext());
+    private boolean retrieveFileAsStream(final String normalizedName,
+                                         final Exchange exchange) {
+        final DiskShare share = diskSharePool.borrow();
+        try {
+            final com.hierynomus.smbj.share.File file = (com.hierynomus.smbj.share.File) openReadOnlyFile(share, normalizedName);
+            final StreamedFileResource resource = new StreamedFileResource(diskSharePool, share, file);
+            exchange.setProperty(SMB_STREAMED_FILE_RESOURCE, resource);
+            exchange.getIn().setBody(resource.getInputStream());
+            return true;
+        } catch (SMBApiException e) {
+            if (e.getStatus() == NtStatus.STATUS_OBJECT_NAME_NOT_FOUND || e.getStatus() == NtStatus.STATUS_OBJECT_PATH_NOT_FOUND) {
+                diskSharePool.release(share);
+                return false;
+            }
+            releaseOrInvalidate(share, e);
+            throw new GenericFileOperationFailedException(String.format("Could not retrieve file '%s'", normalizedName), e);
+        } catch (Exception e) {
+            releaseOrInvalidate(share, e);
+            throw new GenericFileOperationFailedException(String.format("Could not retrieve file '%s'", normalizedName), e);
         }
-        throw new IllegalStateException("For now only NTLM authentication is supported");
     }
 
     /**
-     * Creates a disk share for the given session
+     * Gives the borrowed disk share back to the pool, or discards it if the error indicates a broken disk share.
      *
-     * @param session the session for creating the disk share
-     * @return the created disk share
+     * @param share the borrowed disk share
+     * @param error the error which occurred while the disk share was used
      */
-    private DiskShare createShare(final Session session) {
-        return (DiskShare) session.connectShare(endpoint.getConfiguration().getShare());
+    private void releaseOrInvalidate(final DiskShare share,
+                                     final Exception error) {
+        if (SmbDiskSharePool.isConnectionFailure(error)) {
+            diskSharePool.invalidate(share);
+        } else {
+            diskSharePool.release(share);
+        }
     }
 
     /**
-     * Opens a read only file from the smb share
+     * Opens a read only file from the smb share.
+     * Deletion is shared, so the file can be moved or deleted by the process strategy while it is still being streamed.
      *
      * @param share the disk share to open the file from
-     * @param name  the fully qualified file name to open     * @return the opened file
+     * @param name  the fully qualified file name to open
+     * @return the opened file
      * @throws com.hierynomus.mssmb2.SMBApiException if the file cannot be opened
      */
     private DiskEntry openReadOnlyFile(final DiskShare share,
@@ -454,29 +889,50 @@ public class SmbFileOperations implements GenericFileOperations<SmbFile> {
         return share.openFile(name,
                               EnumSet.of(AccessMask.GENERIC_READ),
                               null,
-                              EnumSet.of(SMB2ShareAccess.FILE_SHARE_READ),
+                              EnumSet.of(SMB2ShareAccess.FILE_SHARE_READ, SMB2ShareAccess.FILE_SHARE_DELETE),
                               SMB2CreateDisposition.FILE_OPEN,
                               null);
     }
 
     /**
-     * Opens a writable file from the smb share
+     * Opens an existing file from the smb share for renaming it.
+     * Reading, writing and deletion are shared, so a file which is still being streamed can be renamed.
      *
-     * @param share the disk share to get the file from
+     * @param share the disk share to open the file from
      * @param name  the fully qualified file name to open
      * @return the opened file
      * @throws com.hierynomus.mssmb2.SMBApiException if the file cannot be opened
      */
-    private DiskEntry openWritableFile(final DiskShare share,
-                                       final String name) {
+    private DiskEntry openRenamableFile(final DiskShare share,
+                                        final String name) {
         return share.openFile(name,
-                              EnumSet.of(AccessMask.GENERIC_ALL),
+                              EnumSet.of(AccessMask.DELETE, AccessMask.FILE_READ_ATTRIBUTES),
                               null,
-                              EnumSet.of(SMB2ShareAccess.FILE_SHARE_WRITE),
-                              SMB2CreateDisposition.FILE_SUPERSEDE,
+                              SMB2ShareAccess.ALL,
+                              SMB2CreateDisposition.FILE_OPEN,
                               null);
     }
 
+    /**
+     * Opens a writable file from the smb share, which is never a directory.
+     *
+     * @param share       the disk share to get the file from
+     * @param name        the fully qualified file name to open
+     * @param disposition the disposition defining how an existing or missing file is handled
+     * @return the opened file
+     * @throws com.hierynomus.mssmb2.SMBApiException if the file cannot be opened
+     */
+    private com.hierynomus.smbj.share.File openWritableFile(final DiskShare share,
+                                                            final String name,
+                                                            final SMB2CreateDisposition disposition) {
+        return share.openFile(name,
+                              EnumSet.of(AccessMask.GENERIC_READ, AccessMask.GENERIC_WRITE),
+                              null,
+                              EnumSet.of(SMB2ShareAccess.FILE_SHARE_WRITE),
+                              disposition,
+                              EnumSet.of(SMB2CreateOptions.FILE_NON_DIRECTORY_FILE));
+    }
+
     /**
      * Copied from FileOperations from camel-file
      * Moves any existing file due fileExists=Move is in use.
@@ -529,7 +985,213 @@ public class SmbFileOperations implements GenericFileOperations<SmbFile> {
     }
 
     /**
-     * Invokes a function within an open disk share, to avoid boilerplate code .
+     * Moves a file to another share on the same server. The content is copied by the server via FSCTL_SRV_COPYCHUNK,
+     * so it never leaves the server. If the server does not support the server side copy, then the content is
+     * streamed through the client instead. The source file is deleted when it is closed after a successful copy,
+     * whereas the target file is deleted if neither copy succeeded. The parent directory of the target file is built upfront.
+     *
+     * @param share       the disk share the source file is located on
+     * @param from        the path of the source file on its share
+     * @param targetShare the name of the share to move the file to
+     * @param to          the path of the target file on the target share
+     * @return true if the file has been moved, false if the source file does not exist
+     * @throws Exception if the file could not be moved
+     */
+    private boolean moveToShare(final DiskShare share,
+                                final String from,
+                                final String targetShare,
+                                final String to) throws Exception {
+        // A missing file is detected by the create, instead of checking its existence upfront
+        final com.hierynomus.smbj.share.File sourceFile;
+        try {
+            sourceFile = share.openFile(from,
+                                        EnumSet.of(AccessMask.GENERIC_READ, AccessMask.DELETE),
+                                        null,
+                                        EnumSet.of(SMB2ShareAccess.FILE_SHARE_READ, SMB2ShareAccess.FILE_SHARE_DELETE),
+                                        SMB2CreateDisposition.FILE_OPEN,
+                                        null);
+        } catch (SMBApiException e) {
+            if (e.getStatus() == NtStatus.STATUS_OBJECT_NAME_NOT_FOUND || e.getStatus() == NtStatus.STATUS_OBJECT_PATH_NOT_FOUND) {
+                return false;
+            }
+            throw e;
+        }
+        try (final com.hierynomus.smbj.share.File source = sourceFile;
+             final DiskShare target = connectShare(share, targetShare)) {
+            final int separator = to.lastIndexOf('\\');
+            if (separator > 0) {
+                buildDirectory(target, to.substring(0, separator));
+            }
+            try (final com.hierynomus.smbj.share.File destination = target.openFile(to,
+                                                                                    EnumSet.of(AccessMask.GENERIC_READ, AccessMask.GENERIC_WRITE, AccessMask.DELETE),
+                                                                                    null,
+                                                                                    EnumSet.noneOf(SMB2ShareAccess.class),
+                                                                                    SMB2CreateDisposition.FILE_OVERWRITE_IF,
+                                                                                    null)) {
+                final long length = source.getFileInformation(FileStandardInformation.class).getEndOfFile();
+                copyContent(() -> serverSideCopy(source, destination, length),
+                            () -> {
+                                try (final InputStream is = source.getInputStream()) {
+                                    new SmbPipelinedTransfer(destination, smbConfiguration, bufferPool).upload(is, 0);
+                                }
+                            },
+                            destination::deleteOnClose,
+                            String.format("from '%s' to '%s:%s'", from, targetShare, to));
+            }
+            source.deleteOnClose();
+            return true;
+        }
+    }
+
+    /**
+     * Copies the content of a file by the server side copy, and streams it through the client instead if the server side copy
+     * has been rejected, either by the server or by smbj. If the content could not be copied at all, then the destination is discarded,
+     * so neither an empty nor a partial file is left behind. A broken connection is not retried by streaming.
+     *
+     * @param serverSideCopy     the server side copy of the content
+     * @param streamedCopy       the copy of the content through the client
+     * @param discardDestination discards the destination when it gets closed
+     * @param description        the description of the copy for logging
+     * @throws Exception if the content could not be copied
+     */
+    static void copyContent(final SmbjCopy serverSideCopy,
+                            final SmbjCopy streamedCopy,
+                            final Runnable discardDestination,
+                            final String description) throws Exception {
+        try {
+            serverSideCopy.copy();
+            return;
+        } catch (SMBRuntimeException e) {
+            if (SmbDiskSharePool.isConnectionFailure(e)) {
+                throw discard(e, discardDestination);
+            }
+            LOG.debug(String.format("Server side copy %s failed with '%s', streaming the content instead", description, e.getMessage()));
+        } catch (Exception e) {
+            throw discard(e, discardDestination);
+        }
+        try {
+            streamedCopy.copy();
+        } catch (Exception e) {
+            throw discard(e, discardDestination);
+        }
+    }
+
+    private static Exception discard(final Exception error,
+                                     final Runnable discardDestination) {
+        try {
+            discardDestination.run();
+        } catch (Exception e) {
+            error.addSuppressed(e);
+        }
+        return error;
+    }
+
+    /**
+     * Copies the content of a file to a file on another share of the same session via FSCTL_SRV_COPYCHUNK.
+     * The resume key of the source file identifies it on the server, which accepts it on any tree connect of the session,
+     * whereas {@link com.hierynomus.smbj.share.File#remoteCopyTo(com.hierynomus.smbj.share.File)} only copies within the same disk share.
+     *
+     * @param source      the source file opened for reading
+     * @param destination the destination file opened for reading and writing
+     * @param length      the number of bytes to copy
+     * @throws Exception if the server rejects the copy or does not write any byte
+     */
+    private static void serverSideCopy(final com.hierynomus.smbj.share.File source,
+                                       final com.hierynomus.smbj.share.File destination,
+                                       final long length) throws Exception {
+        final byte[] resumeKey = Arrays.copyOf(source.ioctl(FSCTL_SRV_REQUEST_RESUME_KEY, true, new byte[0], 0, 0), RESUME_KEY_LENGTH);
+        long offset = 0;
+        while (offset < length) {
+            final SMBBuffer request = new SMBBuffer();
+            new CopyChunkRequest(resumeKey, createCopyChunks(offset, length - offset)).write(request);
+            final byte[] data = request.getCompactData();
+            final CopyChunkResponse response = new CopyChunkResponse();
+            response.read(new SMBBuffer(destination.ioctl((int) CopyChunkRequest.getCtlCode(), true, data, 0, data.length)));
+            if (response.getTotalBytesWritten() <= 0) {
+                throw new SMBRuntimeException(String.format("Server side copy of '%s' stopped after '%d' of '%d' bytes", source.getFileName(), offset, length));
+            }
+            offset += response.getTotalBytesWritten();
+        }
+    }
+
+    /**
+     * Splits the content to copy into the chunks of a single FSCTL_SRV_COPYCHUNK request,
+     * within the limits every server accepts.
+     *
+     * @param offset the offset of the first byte to copy, which is the same in the source and the destination
+     * @param length the number of bytes which are left to copy
+     * @return the chunks of the request, which cover at most {@link #COPY_CHUNKS_PER_REQUEST} times {@link #COPY_CHUNK_SIZE} bytes
+     */
+    static List<CopyChunkRequest.Chunk> createCopyChunks(final long offset,
+                                                          final long length) {
+        final List<CopyChunkRequest.Chunk> chunks = new ArrayList<>();
+        long position = offset;
+        final long end = offset + length;
+        while (position < end && chunks.size() < COPY_CHUNKS_PER_REQUEST) {
+            final long chunkLength = Math.min(COPY_CHUNK_SIZE, end - position);
+            chunks.add(new CopyChunkRequest.Chunk(position, position, chunkLength));
+            position += chunkLength;
+        }
+        return chunks;
+    }
+
+    /**
+     * Builds the directory with all its parents on the given disk share.
+     *
+     * @param share     the disk share to build the directory on
+     * @param directory the path of the directory on the share
+     */
+    private static void buildDirectory(final DiskShare share,
+                                       final String directory) {
+        final String[] directories = directory.split(Matcher.quoteReplacement("\\"));
+        String buildDirectory = "";
+        for (final String part : directories) {
+            if (!part.isEmpty()) {
+                buildDirectory += (buildDirectory.isEmpty()) ? part : ("\\" + part);
+                if (!share.folderExists(buildDirectory)) {
+                    share.mkdir(buildDirectory);
+                }
+            }
+        }
+    }
+
+    /**
+     * Connects another share of the server on the session of the given disk share.
+     *
+     * @param share     the disk share whose session is used
+     * @param shareName the name of the share to connect
+     * @return the connected disk share, which must be closed by the caller
+     */
+    private static DiskShare connectShare(final DiskShare share,
+                                          final String shareName) {
+        return (DiskShare) share.getTreeConnect().getSession().connectShare(shareName);
+    }
+
+    /**
+     * Invokes a function within the share with the given name. The share of the endpoint is borrowed from the pool,
+     * any other share is connected on the session of a pooled disk share and closed afterwards.
+     *
+     * @param shareName the name of the share, or null for the share of the endpoint
+     * @param function  the function to execute within the disk share
+     * @param <T>       the return type of the function, defined by the provided function
+     * @return the function result
+     * @throws Exception if an error occurred during the execution
+     */
+    private <T> T invokeOnDiskShare(final String shareName,
+                                    final SmbjDiskShareFunction<T> function) throws Exception {
+        if (shareName == null || shareName.equalsIgnoreCase(smbConfiguration.getShare())) {
+            return invokeOnDiskShare(function);
+        }
+        return invokeOnDiskShare(share -> {
+            try (final DiskShare other = connectShare(share, shareName)) {
+                return function.apply(other);
+            }
+        });
+    }
+
+    /**
+     * Invokes a function within a pooled disk share, to avoid boilerplate code.
+     * If the disk share turns out to be broken, then the function is retried once on a newly connected disk share.
      *
      * @param function the function to execute within the disk share
      * @param <T>      the return type of the function, defined by the provided function
@@ -537,11 +1199,142 @@ public class SmbFileOperations implements GenericFileOperations<SmbFile> {
      * @throws Exception if an error occurred during the execution
      */
     private <T> T invokeOnDiskShare(final SmbjDiskShareFunction<T> function) throws Exception {
-        try (final Connection connection = createConnection()) {
-            try (final Session session = createSession(connection)) {
-                try (final DiskShare share = createShare(session)) {
-                    return function.apply(share);
+        return invokeOnDiskShare(true, function);
+    }
+
+    /**
+     * Invokes a function within the disk share held by the exchange bound to the current thread, or within a pooled disk share
+     * if there is none, to avoid boilerplate code. So the commit of an exchange which holds a disk share does not wait for another one.
+     *
+     * @param retry    true if the function is retried once on a newly connected disk share after a connection failure
+     * @param function the function to execute within the disk share
+     * @param <T>      the return type of the function, defined by the provided function
+     * @return the function result
+     * @throws Exception if an error occurred during the execution
+     */
+    private <T> T invokeOnDiskShare(final boolean retry,
+                                    final SmbjDiskShareFunction<T> function) throws Exception {
+        final DiskShare held = heldDiskShare();
+        if (held != null && held.isConnected()) {
+            try {
+                return function.apply(held);
+            } catch (Exception e) {
+                // The held disk share is given back by its holder, which discards it if it is broken
+                if (!retry || !SmbDiskSharePool.isConnectionFailure(e)) {
+                    throw e;
                 }
+                LOG.debug(String.format("Held disk share broken due to '%s', retrying on a pooled disk share", e.getMessage()));
+                return invokeOnPooledDiskShare(false, function);
+            }
+        }
+        return invokeOnPooledDiskShare(retry, function);
+    }
+
+    /**
+     * Invokes a function within a disk share borrowed from the pool.
+     * A disk share which caused a connection failure is discarded and not given back to the pool.
+     *
+     * @param retry    true if the function is retried once on a newly connected disk share after a connection failure
+     * @param function the function to execute within the disk share
+     * @param <T>      the return type of the function, defined by the provided function
+     * @return the function result
+     * @throws Exception if an error occurred during the execution
+     */
+    private <T> T invokeOnPooledDiskShare(final boolean retry,
+                                          final SmbjDiskShareFunction<T> function) throws Exception {
+        final DiskShare share = diskSharePool.borrow();
+        try {
+            final T result = function.apply(share);
+            diskSharePool.release(share);
+            return result;
+        } catch (Exception e) {
+            if (!SmbDiskSharePool.isConnectionFailure(e)) {
+                diskSharePool.release(share);
+                throw e;
+            }
+            diskSharePool.invalidate(share);
+            if (!retry) {
+                throw e;
+            }
+            LOG.debug(String.format("Disk share broken due to '%s', retrying on a new disk share", e.getMessage()));
+            return invokeOnPooledDiskShare(false, function);
+        }
+    }
+
+    /**
+     * Gets the disk share which is held by the exchange bound to the current thread, either by its exclusive read lock
+     * or by its streamed download.
+     *
+     * @return the held disk share, or null if no exchange is bound or it holds no disk share
+     */
+    private DiskShare heldDiskShare() {
+        final Exchange exchange = boundExchange.get();
+        if (exchange == null) {
+            return null;
+        }
+        final SmbLockedFile lockedFile = exchange.getProperty(SMB_EXCLUSIVE_READ_LOCK, SmbLockedFile.class);
+        if (lockedFile != null) {
+            return lockedFile.getShare();
+        }
+        final StreamedFileResource resource = exchange.getProperty(SMB_STREAMED_FILE_RESOURCE, StreamedFileResource.class);
+        return (resource != null) ? resource.share : null;
+    }
+
+    /**
+     * The remote file resources of a streamed download, which are held open until the exchange is done.
+     * A stream on the file of an exclusive read lock only owns the stream, because the file and its disk share are released with the lock.
+     */
+    private static final class StreamedFileResource implements Closeable {
+
+        private final SmbDiskSharePool pool;
+        private final DiskShare share;
+        private final com.hierynomus.smbj.share.File file;
+        private final InputStream inputStream;
+
+        private StreamedFileResource(final SmbDiskSharePool pool,
+                                     final DiskShare share,
+                                     final com.hierynomus.smbj.share.File file) {
+            this.pool = pool;
+            this.share = share;
+            this.file = file;
+            this.inputStream = file.getInputStream();
+        }
+
+        private StreamedFileResource(final com.hierynomus.smbj.share.File lockedFile) {
+            this(null, null, lockedFile);
+        }
+
+        private InputStream getInputStream() {
+            return inputStream;
+        }
+
+        /**
+         * Closes the stream and the file each on its own, so a failing stream does not leak the file handle,
+         * and gives the disk share back exactly once, whereby it is invalidated if either close failed due to a broken connection.
+         * The file of a read lock is left open, because it is closed when the lock is released.
+         */
+        @Override
+        public void close() {
+            boolean connectionFailure = false;
+            try {
+                inputStream.close();
+            } catch (Exception e) {
+                LOG.debug(String.format("Could not close stream of streamed file '%s'", file.getFileName()), e);
+                connectionFailure = SmbDiskSharePool.isConnectionFailure(e);
+            }
+            if (pool == null) {
+                return;
+            }
+            try {
+                file.close();
+            } catch (Exception e) {
+                LOG.debug(String.format("Could not close streamed file '%s'", file.getFileName()), e);
+                connectionFailure = connectionFailure || SmbDiskSharePool.isConnectionFailure(e);
+            }
+            if (connectionFailure) {
+                pool.invalidate(share);
+            } else {
+                pool.release(share);
             }
         }
     }
@@ -555,4 +1348,12 @@ public class SmbFileOperations implements GenericFileOperations<SmbFile> {
     private interface SmbjDiskShareFunction<T> {
         T apply(DiskShare share) throws Exception;
     }
+
+    /**
+     * This interface is used to provide a copy of the content of a file.
+     */
+    @FunctionalInterface
+    interface SmbjCopy {
+        void copy() throws Exception;
+    }
 }
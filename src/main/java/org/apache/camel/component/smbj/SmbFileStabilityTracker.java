@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class tracks the length and change time of the candidate files across polls, so a changed read lock can be
+ * granted from the listings the consumer makes anyway, instead of listing each file repeatedly and sleeping in between.
+ * A file is considered stable if it has been observed unchanged by two consecutive polls, or if it has not been changed
+ * for a minimum age.
+ *
+ * @since 10/16/2026
+ */
+public class SmbFileStabilityTracker {
+
+    private final long expiry;
+    private final AtomicLong pollSequence = new AtomicLong();
+    private final Map<String, Observation> observations = new ConcurrentHashMap<>();
+
+    /**
+     * @param expiry the time in milliseconds after which a file which has not been observed anymore is forgotten
+     */
+    public SmbFileStabilityTracker(final long expiry) {
+        this.expiry = expiry;
+    }
+
+    /**
+     * Starts a new poll and forgets the files which have not been observed within the expiry.
+     *
+     * @return the sequence number of the new poll
+     */
+    public long beginPoll() {
+        final long threshold = System.currentTimeMillis() - expiry;
+        observations.values().removeIf(observation -> observation.observedAt < threshold);
+        return pollSequence.incrementAndGet();
+    }
+
+    /**
+     * Records the state of a file as listed by the given poll.
+     *
+     * @param file the listed file
+     * @param poll the sequence number of the poll which listed the file
+     */
+    public void observe(final SmbFile file,
+                        final long poll) {
+        observations.compute(file.getFileNameFull(), (path, previous) -> {
+            final Observation current = new Observation(file.getFileLength(), file.getLastModified(), poll);
+            if (previous != null && previous.length == current.length && previous.changeTime == current.changeTime) {
+                // Observing a file twice within the same poll does not make it more stable
+                current.unchangedPolls = (previous.poll < poll) ? (previous.unchangedPolls + 1) : previous.unchangedPolls;
+            }
+            return current;
+        });
+    }
+
+    /**
+     * Answers the question whether the file is stable according to the recorded observations.
+     *
+     * @param path      the absolute path of the file
+     * @param minLength the minimum length of the file
+     * @param minAge    the minimum time in milliseconds since the last change of the file, or 0 if it must be unchanged across two polls instead
+     * @return true if the file is stable, false otherwise
+     */
+    public boolean isStable(final String path,
+                            final long minLength,
+                            final long minAge) {
+        final Observation observation = observations.get(path);
+        if (observation == null || observation.length < minLength) {
+            return false;
+        }
+        if (minAge != 0) {
+            return observation.changeTime < System.currentTimeMillis() - minAge;
+        }
+        return observation.unchangedPolls > 0;
+    }
+
+    /**
+     * Forgets the observations of the file, because it has been consumed.
+     *
+     * @param path the absolute path of the file
+     */
+    public void forget(final String path) {
+        observations.remove(path);
+    }
+
+    /**
+     * @return the number of tracked files
+     */
+    public int size() {
+        return observations.size();
+    }
+
+    /**
+     * The observed state of a file.
+     */
+    private static final class Observation {
+
+        private final long length;
+        private final long changeTime;
+        private final long poll;
+        private final long observedAt = System.currentTimeMillis();
+        private int unchangedPolls = 0;
+
+        private Observation(final long length,
+                            final long changeTime,
+                            final long poll) {
+            this.length = length;
+            this.changeTime = changeTime;
+            this.poll = poll;
+        }
+    }
+}
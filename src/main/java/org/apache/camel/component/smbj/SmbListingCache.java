@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class caches the listings of directories, which are valid as long as the change time of the directory,
+ * as reported by the listing of its parent directory, has not changed.
+ * The change time of a directory changes when entries are added, removed or renamed, but not when the content
+ * of a contained file changes, therefore every listing is refreshed after the configured interval regardless.
+ * Neither does it change when entries are added below a sub directory, therefore a listing must only be validated
+ * against a change time which is current, and not against the one held by a cached listing of its parent.
+ * The least recently used listings are evicted if the maximum number of listings is exceeded.
+ *
+ * @since 10/16/2026
+ */
+public class SmbListingCache {
+
+    private final int maxEntries;
+    private final long refreshInterval;
+    private final LinkedHashMap<String, CachedListing> listings;
+
+    /**
+     * @param maxEntries      the maximum number of cached directory listings
+     * @param refreshInterval the interval in milliseconds after which a listing is refreshed, whereby a value <= 0 disables it
+     */
+    public SmbListingCache(final int maxEntries,
+                           final long refreshInterval) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.refreshInterval = refreshInterval;
+        this.listings = new LinkedHashMap<String, CachedListing>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CachedListing> eldest) {
+                return size() > SmbListingCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param directory  the normalized path of the directory
+     * @param changeTime the current change time of the directory
+     * @return the cached listing if it is an immutable snapshot, or a copy of it otherwise, or null if there is no valid cached listing
+     */
+    public synchronized List<SmbFile> get(final String directory,
+                                          final long changeTime) {
+        final CachedListing listing = listings.get(directory);
+        if (listing == null) {
+            return null;
+        }
+        if (listing.changeTime != changeTime || (refreshInterval > 0 && System.currentTimeMillis() - listing.cachedAt >= refreshInterval)) {
+            listings.remove(directory);
+            return null;
+        }
+        return (listing.files instanceof SmbDirectorySnapshot) ? listing.files : new ArrayList<>(listing.files);
+    }
+
+    /**
+     * @param directory  the normalized path of the directory
+     * @param changeTime the change time of the directory the listing has been made for
+     * @param files      the listed files
+     */
+    public synchronized void put(final String directory,
+                                 final long changeTime,
+                                 final List<SmbFile> files) {
+        listings.put(directory, new CachedListing(changeTime, (files instanceof SmbDirectorySnapshot) ? files : new ArrayList<>(files)));
+    }
+
+    /**
+     * @return the number of cached listings
+     */
+    public synchronized int size() {
+        return listings.size();
+    }
+
+    /**
+     * Removes all cached listings.
+     */
+    public synchronized void clear() {
+        listings.clear();
+    }
+
+    /**
+     * A cached listing together with the change time of the directory it has been made for.
+     */
+    private static final class CachedListing {
+
+        private final long changeTime;
+        private final List<SmbFile> files;
+        private final long cachedAt = System.currentTimeMillis();
+
+        private CachedListing(final long changeTime,
+                              final List<SmbFile> files) {
+            this.changeTime = changeTime;
+            this.files = files;
+        }
+    }
+}
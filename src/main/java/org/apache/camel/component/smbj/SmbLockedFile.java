@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.share.File;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Objects;
+
+/**
+ * This class holds a remote file which has been opened without sharing write access, so no one can write to it
+ * as long as it is open. The disk share the file has been opened on stays borrowed until this locked file gets closed,
+ * and it is reused by the other file operations of the exchange which holds the lock.
+ *
+ * @since 10/16/2026
+ */
+public class SmbLockedFile implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SmbLockedFile.class);
+    private final SmbDiskSharePool pool;
+    private final DiskShare share;
+    private final File file;
+    private final String path;
+
+    /**
+     * @param pool  the pool the disk share has been borrowed from
+     * @param share the borrowed disk share the file has been opened on
+     * @param file  the open file
+     * @param path  the normalized path of the file
+     */
+    public SmbLockedFile(final SmbDiskSharePool pool,
+                         final DiskShare share,
+                         final File file,
+                         final String path) {
+        this.pool = Objects.requireNonNull(pool, "Cannot lock a file with a null pool");
+        this.share = Objects.requireNonNull(share, "Cannot lock a file with a null disk share");
+        this.file = Objects.requireNonNull(file, "Cannot lock a null file");
+        this.path = Objects.requireNonNull(path, "Cannot lock a file with a null path");
+    }
+
+    /**
+     * @return the open file, which must not be closed by the caller
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the borrowed disk share the file has been opened on, which must not be given back by the caller
+     */
+    public DiskShare getShare() {
+        return share;
+    }
+
+    /**
+     * @return the normalized path of the file
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Closes the file, which releases the lock, and gives the disk share back to the pool.
+     */
+    @Override
+    public void close() {
+        try {
+            file.close();
+            pool.release(share);
+        } catch (Exception e) {
+            LOG.debug(String.format("Could not close locked file '%s'", path), e);
+            if (SmbDiskSharePool.isConnectionFailure(e)) {
+                pool.invalidate(share);
+            } else {
+                pool.release(share);
+            }
+        }
+    }
+}
@@ -0,0 +1,415 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.msfscc.fileinformation.FileInformation;
+import com.hierynomus.msfscc.fileinformation.FileInformationFactory;
+import com.hierynomus.msfscc.fileinformation.FileRenameInformation;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2CreateOptions;
+import com.hierynomus.mssmb2.SMB2FileId;
+import com.hierynomus.mssmb2.SMB2ImpersonationLevel;
+import com.hierynomus.mssmb2.SMB2Packet;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.mssmb2.messages.SMB2Close;
+import com.hierynomus.mssmb2.messages.SMB2CreateRequest;
+import com.hierynomus.mssmb2.messages.SMB2CreateResponse;
+import com.hierynomus.mssmb2.messages.SMB2SetInfoRequest;
+import com.hierynomus.mssmb2.messages.SMB2SetInfoResponse;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.protocol.commons.buffer.Endian;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smbj.common.SmbPath;
+import com.hierynomus.smbj.session.Session;
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.share.TreeConnect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class performs the metadata operations with as few round trips as smbj allows. smbj does not support compounded requests,
+ * therefore a create and its close cannot be sent in one packet, but
+ * <ul>
+ * <li>an existence check does not wait for the close of its attribute only handle</li>
+ * <li>a deletion opens the file with delete on close instead of setting its disposition</li>
+ * <li>the attributes, size and times of a file are taken from the close response instead of querying them</li>
+ * </ul>
+ * and missing files are detected by the create, instead of checking their existence upfront.
+ *
+ * @since 10/16/2026
+ */
+public class SmbMetadataOperations {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SmbMetadataOperations.class);
+    /**
+     * The maximum number of requests sent without waiting for their responses, so the credits granted by the server are not exceeded
+     */
+    private static final int MAX_REQUESTS_IN_FLIGHT = 32;
+    private final long timeout;
+
+    /**
+     * @param configuration the configuration holding the timeouts
+     */
+    public SmbMetadataOperations(final SmbConfiguration configuration) {
+        Objects.requireNonNull(configuration, "Cannot perform metadata operations with a null configuration");
+        this.timeout = Optional.ofNullable(configuration.getTransactTimeout()).orElse(configuration.getTimeout());
+    }
+
+    /**
+     * Checks whether a file exists with a single round trip. The handle is closed without waiting for the response,
+     * which does not interfere with other handles, because it does not access the content of the file.
+     *
+     * @param share the disk share holding the file
+     * @param path  the path of the file on the disk share
+     * @return true if the file exists, false if it does not exist or is a directory
+     * @throws Exception if the check failed
+     */
+    public boolean exists(final DiskShare share,
+                          final String path) throws Exception {
+        final SMB2CreateResponse response = create(share,
+                                                   path,
+                                                   EnumSet.of(AccessMask.FILE_READ_ATTRIBUTES),
+                                                   EnumSet.of(SMB2CreateOptions.FILE_NON_DIRECTORY_FILE));
+        if (isMissing(response) || response.getHeader().getStatusCode() == NtStatus.STATUS_FILE_IS_A_DIRECTORY.getValue()) {
+            return false;
+        }
+        checkSuccess(response, path);
+        sendClose(share, response.getFileId());
+        return true;
+    }
+
+    /**
+     * Deletes a file with two round trips, by opening it with delete on close and closing it.
+     *
+     * @param share the disk share holding the file
+     * @param path  the path of the file on the disk share
+     * @return true if the file has been deleted, false if it does not exist
+     * @throws Exception if the deletion failed
+     */
+    public boolean delete(final DiskShare share,
+                          final String path) throws Exception {
+        final SMB2CreateResponse response = create(share,
+                                                   path,
+                                                   EnumSet.of(AccessMask.DELETE),
+                                                   EnumSet.of(SMB2CreateOptions.FILE_NON_DIRECTORY_FILE, SMB2CreateOptions.FILE_DELETE_ON_CLOSE));
+        if (isMissing(response)) {
+            return false;
+        }
+        checkSuccess(response, path);
+        close(share, response.getFileId(), path);
+        return true;
+    }
+
+    /**
+     * Gets a file or directory with two round trips, whereby its attributes, size and times are returned by the close.
+     *
+     * @param share the disk share holding the file
+     * @param path  the normalized path of the file on the disk share
+     * @return the file, or null if it does not exist
+     * @throws Exception if the file could not be opened or closed
+     */
+    public SmbFile getFile(final DiskShare share,
+                           final String path) throws Exception {
+        final SMB2CreateResponse response = create(share, path, EnumSet.of(AccessMask.FILE_READ_ATTRIBUTES), EnumSet.noneOf(SMB2CreateOptions.class));
+        if (isMissing(response)) {
+            return null;
+        }
+        checkSuccess(response, path);
+        return closeAndDescribe(share, response.getFileId(), path);
+    }
+
+    /**
+     * Closes an open file and describes it by the attributes, size and times returned by the close, instead of querying them.
+     *
+     * @param share  the disk share the file has been opened on
+     * @param fileId the id of the open file, which must not be closed again
+     * @param path   the normalized path of the file on the disk share
+     * @return the described file
+     * @throws Exception if the close failed
+     */
+    public SmbFile closeAndDescribe(final DiskShare share,
+                                    final SMB2FileId fileId,
+                                    final String path) throws Exception {
+        final SMB2Close close = close(share, fileId, path);
+        final byte[] bytes = close.getFileAttributes();
+        final long attributes = (bytes[0] & 0xFFL) | ((bytes[1] & 0xFFL) << 8) | ((bytes[2] & 0xFFL) << 16) | ((bytes[3] & 0xFFL) << 24);
+        final boolean directory = SmbFileAttributeUtils.isDirectory(attributes);
+        return new SmbFile(directory,
+                           SmbFileAttributeUtils.isArchive(attributes),
+                           SmbFileAttributeUtils.isHidden(attributes),
+                           SmbFileAttributeUtils.isReadOnly(attributes),
+                           SmbFileAttributeUtils.isSystem(attributes),
+                           path,
+                           directory ? 0 : close.getSize(),
+                           close.getChangeTime().toEpochMillis());
+    }
+
+    /**
+     * Commits the moves and deletes of processed files with pipelined requests. The creates of a window of files are sent
+     * at once, followed by the renames of the opened files and then their closes, so a whole window takes three round trips
+     * for moves and two round trips for deletes, whereby deleted files are opened with delete on close.
+     * A file which has already been deleted is not considered a failure.
+     *
+     * @param share   the disk share holding the files
+     * @param entries the moves and deletes whose paths are on the given disk share
+     * @return the failures by entry, which is empty if all entries have been committed
+     * @throws Exception if the requests could not be sent or have not been answered, whereby the outcome of the entries is unknown
+     */
+    public Map<SmbCommitBatch.Entry, Exception> commitAll(final DiskShare share,
+                                                          final List<SmbCommitBatch.Entry> entries) throws Exception {
+        final Map<SmbCommitBatch.Entry, Exception> failures = new LinkedHashMap<>();
+        for (int start = 0; start < entries.size(); start += MAX_REQUESTS_IN_FLIGHT) {
+            commitWindow(share, entries.subList(start, Math.min(entries.size(), start + MAX_REQUESTS_IN_FLIGHT)), failures);
+        }
+        return failures;
+    }
+
+    /**
+     * Sends a create request on the given disk share without waiting for the response.
+     * The file is opened with all sharing modes, if no other sharing modes are given.
+     *
+     * @param share       the disk share to open the file on
+     * @param path        the path of the file on the disk share
+     * @param access      the desired access
+     * @param shareAccess the sharing modes
+     * @param disposition the create disposition
+     * @param options     the create options
+     * @return the future of the create response
+     * @throws TransportException if the request could not be sent
+     */
+    public static Future<SMB2CreateResponse> sendCreate(final DiskShare share,
+                                                        final String path,
+                                                        final Set<AccessMask> access,
+                                                        final Set<SMB2ShareAccess> shareAccess,
+                                                        final SMB2CreateDisposition disposition,
+                                                        final Set<SMB2CreateOptions> options) throws TransportException {
+        final TreeConnect treeConnect = share.getTreeConnect();
+        final Session session = treeConnect.getSession();
+        return session.send(new SMB2CreateRequest(session.getConnection().getNegotiatedProtocol().getDialect(),
+                                                  session.getSessionId(),
+                                                  treeConnect.getTreeId(),
+                                                  SMB2ImpersonationLevel.Impersonation,
+                                                  access,
+                                                  EnumSet.noneOf(FileAttributes.class),
+                                                  shareAccess,
+                                                  disposition,
+                                                  options,
+                                                  new SmbPath(share.getSmbPath(), path)));
+    }
+
+    /**
+     * Sends a close request without waiting for the response. The attributes, size and times of the file are requested
+     * to be returned by the close.
+     *
+     * @param share  the disk share the file has been opened on
+     * @param fileId the id of the open file
+     * @return the future of the close response
+     * @throws TransportException if the request could not be sent
+     */
+    public static Future<SMB2Close> sendClose(final DiskShare share,
+                                              final SMB2FileId fileId) throws TransportException {
+        final TreeConnect treeConnect = share.getTreeConnect();
+        final Session session = treeConnect.getSession();
+        return session.send(new SMB2Close(session.getConnection().getNegotiatedProtocol().getDialect(), session.getSessionId(), treeConnect.getTreeId(), fileId));
+    }
+
+    /**
+     * Sends a rename request for an open file without waiting for the response. An existing target file is replaced.
+     *
+     * @param share  the disk share the file has been opened on
+     * @param fileId the id of the file opened with delete access
+     * @param to     the path on the disk share to rename the file to
+     * @return the future of the rename response
+     * @throws TransportException if the request could not be sent
+     */
+    public static Future<SMB2SetInfoResponse> sendRename(final DiskShare share,
+                                                         final SMB2FileId fileId,
+                                                         final String to) throws TransportException {
+        final FileInformation.Encoder<FileRenameInformation> encoder = FileInformationFactory.getEncoder(FileRenameInformation.class);
+        final Buffer.PlainBuffer buffer = new Buffer.PlainBuffer(Endian.LE);
+        encoder.write(new FileRenameInformation(true, 0L, to), buffer);
+        final TreeConnect treeConnect = share.getTreeConnect();
+        final Session session = treeConnect.getSession();
+        return session.send(new SMB2SetInfoRequest(session.getConnection().getNegotiatedProtocol().getDialect(),
+                                                   session.getSessionId(),
+                                                   treeConnect.getTreeId(),
+                                                   SMB2SetInfoRequest.SMB2InfoType.SMB2_0_INFO_FILE,
+                                                   fileId,
+                                                   encoder.getInformationClass(),
+                                                   null,
+                                                   buffer.getCompactData()));
+    }
+
+    private void commitWindow(final DiskShare share,
+                              final List<SmbCommitBatch.Entry> window,
+                              final Map<SmbCommitBatch.Entry, Exception> failures) throws TransportException {
+        final List<Future<SMB2CreateResponse>> creates = new ArrayList<>(window.size());
+        final SMB2FileId[] fileIds = new SMB2FileId[window.size()];
+        final boolean[] closing = new boolean[window.size()];
+        int awaitedCreates = 0;
+        try {
+            for (final SmbCommitBatch.Entry entry : window) {
+                creates.add(entry.isDelete()
+                                    ? sendCreate(share,
+                                                 entry.getFrom(),
+                                                 EnumSet.of(AccessMask.DELETE),
+                                                 SMB2ShareAccess.ALL,
+                                                 SMB2CreateDisposition.FILE_OPEN,
+                                                 EnumSet.of(SMB2CreateOptions.FILE_NON_DIRECTORY_FILE, SMB2CreateOptions.FILE_DELETE_ON_CLOSE))
+                                    : sendCreate(share,
+                                                 entry.getFrom(),
+                                                 EnumSet.of(AccessMask.DELETE, AccessMask.FILE_READ_ATTRIBUTES),
+                                                 SMB2ShareAccess.ALL,
+                                                 SMB2CreateDisposition.FILE_OPEN,
+                                                 EnumSet.noneOf(SMB2CreateOptions.class)));
+            }
+            for (int i = 0; i < window.size(); i++) {
+                final SmbCommitBatch.Entry entry = window.get(i);
+                final SMB2CreateResponse response = await(creates.get(i));
+                awaitedCreates++;
+                if (entry.isDelete() && isMissing(response)) {
+                    continue;
+                }
+                if (response.isSuccess()) {
+                    fileIds[i] = response.getFileId();
+                } else {
+                    failures.put(entry, new SMBApiException(response.getHeader(), String.format("Create of '%s' failed", entry.getFrom())));
+                }
+            }
+
+            final List<Future<SMB2SetInfoResponse>> renames = new ArrayList<>(Collections.nCopies(window.size(), null));
+            for (int i = 0; i < window.size(); i++) {
+                if (fileIds[i] != null && !window.get(i).isDelete()) {
+                    renames.set(i, sendRename(share, fileIds[i], window.get(i).getTo()));
+                }
+            }
+            for (int i = 0; i < window.size(); i++) {
+                if (renames.get(i) != null) {
+                    final SMB2SetInfoResponse response = await(renames.get(i));
+                    if (response.getHeader().getStatusCode() != NtStatus.STATUS_SUCCESS.getValue()) {
+                        failures.put(window.get(i), new SMBApiException(response.getHeader(), String.format("Rename of '%s' failed", window.get(i).getFrom())));
+                    }
+                }
+            }
+
+            final List<Future<SMB2Close>> closes = new ArrayList<>(Collections.nCopies(window.size(), null));
+            for (int i = 0; i < window.size(); i++) {
+                if (fileIds[i] != null) {
+                    closes.set(i, sendClose(share, fileIds[i]));
+                    closing[i] = true;
+                }
+            }
+            for (int i = 0; i < window.size(); i++) {
+                if (closes.get(i) != null) {
+                    final SMB2Close response = await(closes.get(i));
+                    // A deleted file is removed by its close, whereas a renamed file has already been moved
+                    if (window.get(i).isDelete() && response.getHeader().getStatusCode() != NtStatus.STATUS_SUCCESS.getValue()) {
+                        failures.put(window.get(i), new SMBApiException(response.getHeader(), String.format("Close of '%s' failed", window.get(i).getFrom())));
+                    }
+                }
+            }
+        } finally {
+            // A failed window must not leave any handle open, so the creates which have been answered meanwhile are closed as well
+            for (int i = awaitedCreates; i < creates.size(); i++) {
+                final Future<SMB2CreateResponse> create = creates.get(i);
+                if (create.isDone()) {
+                    try {
+                        final SMB2CreateResponse response = await(create);
+                        fileIds[i] = response.isSuccess() ? response.getFileId() : null;
+                    } catch (Exception e) {
+                        LOG.debug(String.format("Create of '%s' failed", window.get(i).getFrom()), e);
+                    }
+                }
+            }
+            for (int i = 0; i < fileIds.length; i++) {
+                if (fileIds[i] != null && !closing[i]) {
+                    closeQuietly(share, fileIds[i], window.get(i).getFrom());
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(final DiskShare share,
+                                     final SMB2FileId fileId,
+                                     final String path) {
+        try {
+            sendClose(share, fileId);
+        } catch (Exception e) {
+            LOG.debug(String.format("Could not close '%s' after the failed commit", path), e);
+        }
+    }
+
+    private <T> T await(final Future<T> future) throws TransportException {
+        return Futures.get(future, timeout, TimeUnit.MILLISECONDS, TransportException.Wrapper);
+    }
+
+    private SMB2CreateResponse create(final DiskShare share,
+                                      final String path,
+                                      final Set<AccessMask> access,
+                                      final Set<SMB2CreateOptions> options) throws TransportException {
+        return Futures.get(sendCreate(share, path, access, SMB2ShareAccess.ALL, SMB2CreateDisposition.FILE_OPEN, options),
+                           timeout,
+                           TimeUnit.MILLISECONDS,
+                           TransportException.Wrapper);
+    }
+
+    private SMB2Close close(final DiskShare share,
+                            final SMB2FileId fileId,
+                            final String path) throws TransportException {
+        final SMB2Close response = Futures.get(sendClose(share, fileId), timeout, TimeUnit.MILLISECONDS, TransportException.Wrapper);
+        checkSuccess(response.getHeader().getStatusCode() == NtStatus.STATUS_SUCCESS.getValue(), response, "Close", path);
+        return response;
+    }
+
+    private static boolean isMissing(final SMB2CreateResponse response) {
+        final long status = response.getHeader().getStatusCode();
+        return status == NtStatus.STATUS_OBJECT_NAME_NOT_FOUND.getValue()
+                || status == NtStatus.STATUS_OBJECT_PATH_NOT_FOUND.getValue()
+                || status == NtStatus.STATUS_DELETE_PENDING.getValue();
+    }
+
+    private static void checkSuccess(final SMB2CreateResponse response,
+                                     final String path) {
+        checkSuccess(response.isSuccess(), response, "Create", path);
+    }
+
+    private static void checkSuccess(final boolean success,
+                                     final SMB2Packet response,
+                                     final String request,
+                                     final String path) {
+        if (!success) {
+            throw new SMBApiException(response.getHeader(), String.format("%s of '%s' failed", request, path));
+        }
+    }
+}
@@ -0,0 +1,728 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2Dialect;
+import com.hierynomus.mssmb2.SMB2FileId;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.mssmb2.messages.SMB2Close;
+import com.hierynomus.mssmb2.messages.SMB2ReadRequest;
+import com.hierynomus.mssmb2.messages.SMB2ReadResponse;
+import com.hierynomus.mssmb2.messages.SMB2WriteRequest;
+import com.hierynomus.mssmb2.messages.SMB2WriteResponse;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smbj.connection.NegotiatedProtocol;
+import com.hierynomus.smbj.session.Session;
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.share.File;
+import com.hierynomus.smbj.share.TreeConnect;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class transfers the content of an open remote file by keeping multiple SMB2 requests in flight at different offsets,
+ * so the throughput is not limited to one chunk per round trip.
+ *
+ * @since 10/16/2026
+ */
+public class SmbPipelinedTransfer {
+
+    // The payload size covered by a single credit, whose multiples are the sizes of multi credit reads and writes
+    private static final int CREDIT_PAYLOAD_SIZE = 64 * 1024;
+
+    private final String fileName;
+    private final Session session;
+    private final SMB2Dialect dialect;
+    private final SMB2FileId fileId;
+    private final long treeId;
+    private final int readChunkSize;
+    private final int downloadPipelineDepth;
+    private final long readTimeout;
+    private final int writeChunkSize;
+    private final int uploadPipelineDepth;
+    private final long writeTimeout;
+    private final SmbBufferPool bufferPool;
+
+    /**
+     * @param file          the open remote file to transfer the content of
+     * @param configuration the configuration holding the chunk sizes, pipeline depths and timeouts
+     * @param bufferPool    the pool to acquire the transfer buffers from
+     */
+    public SmbPipelinedTransfer(final File file,
+                                final SmbConfiguration configuration,
+                                final SmbBufferPool bufferPool) {
+        this(Objects.requireNonNull(file, "Cannot transfer a null file").getDiskShare(), file.getFileId(), file.getFileName(), configuration, bufferPool);
+    }
+
+    /**
+     * @param share         the disk share the remote file has been opened on
+     * @param fileId        the id of the open remote file to transfer the content of
+     * @param fileName      the name of the remote file
+     * @param configuration the configuration holding the chunk sizes, pipeline depths and timeouts
+     * @param bufferPool    the pool to acquire the transfer buffers from
+     */
+    public SmbPipelinedTransfer(final DiskShare share,
+                                final SMB2FileId fileId,
+                                final String fileName,
+                                final SmbConfiguration configuration,
+                                final SmbBufferPool bufferPool) {
+        this.fileName = Objects.requireNonNull(fileName, "Cannot transfer a file with a null name");
+        final TreeConnect treeConnect = Objects.requireNonNull(share, "Cannot transfer a file on a null disk share").getTreeConnect();
+        final NegotiatedProtocol protocol = treeConnect.getSession().getConnection().getNegotiatedProtocol();
+        this.session = treeConnect.getSession();
+        this.dialect = protocol.getDialect();
+        this.fileId = Objects.requireNonNull(fileId, "Cannot transfer a file with a null file id");
+        this.treeId = treeConnect.getTreeId();
+        // A read always asks for the payload size of its credits, therefore the chunks are a multiple of it, so they do not overlap
+        this.readChunkSize = roundToCredits(Math.min(protocol.getMaxReadSize(),
+                                                     Optional.ofNullable(configuration.getDownloadChunkSize())
+                                                             .orElse(Optional.ofNullable(configuration.getReadBufferSize()).orElse(configuration.getBufferSize()))));
+        this.downloadPipelineDepth = Math.max(1, configuration.getDownloadPipelineDepth());
+        this.readTimeout = Optional.ofNullable(configuration.getReadTimeout()).orElse(configuration.getTimeout());
+        this.writeChunkSize = Math.min(protocol.getMaxWriteSize(),
+                                       Optional.ofNullable(configuration.getUploadChunkSize())
+                                               .orElse(Optional.ofNullable(configuration.getWriteBufferSize()).orElse(configuration.getBufferSize())));
+        this.uploadPipelineDepth = Math.max(1, configuration.getUploadPipelineDepth());
+        this.writeTimeout = Optional.ofNullable(configuration.getWriteTimeout()).orElse(configuration.getTimeout());
+        this.bufferPool = Objects.requireNonNull(bufferPool, "Cannot transfer a file with a null buffer pool");
+    }
+
+    /**
+     * Downloads the remote file into the given channel by writing each chunk at its offset.
+     * If the size of the remote file is known, then no reads are issued beyond it, except a single read at a time
+     * to detect that the file has grown meanwhile.
+     *
+     * @param channel  the channel to write the downloaded chunks to
+     * @param sizeHint the expected size of the remote file, or a negative value if it is unknown
+     * @return the number of downloaded bytes
+     * @throws IOException if the download fails
+     */
+    public long download(final FileChannel channel,
+                         final long sizeHint) throws IOException {
+        return download((position, data) -> {
+            long current = position;
+            while (data.hasRemaining()) {
+                current += channel.write(data, current);
+            }
+        }, sizeHint);
+    }
+
+    /**
+     * Downloads the remote file into the given sink, which receives the chunks in ascending order of their offsets.
+     * If the size of the remote file is known, then no reads are issued beyond it, except a single read at a time
+     * to detect that the file has grown meanwhile. A read which returns less than requested is continued, only the end of file
+     * status ends the download, so a file which has been truncated or has grown since it was listed is read up to its actual end.
+     *
+     * @param sink     the sink to hand the downloaded chunks to
+     * @param sizeHint the expected size of the remote file, which only bounds the reads in flight, or a negative value if it is unknown
+     * @return the number of downloaded bytes
+     * @throws IOException if the download or the sink fails
+     */
+    public long download(final ChunkSink sink,
+                         final long sizeHint) throws IOException {
+        final Deque<PendingRead> inFlight = new ArrayDeque<>(downloadPipelineDepth);
+        long nextOffset = 0;
+        long end = 0;
+        try {
+            while (true) {
+                while (inFlight.size() < downloadPipelineDepth && (sizeHint < 0 || nextOffset < sizeHint || end >= nextOffset)) {
+                    final PendingRead read = sendRead(nextOffset, readChunkSize);
+                    inFlight.addLast(read);
+                    nextOffset += read.length;
+                }
+                final PendingRead read = inFlight.pollFirst();
+                if (read == null) {
+                    break;
+                }
+                final SMB2ReadResponse response = Futures.get(read.future, readTimeout, TimeUnit.MILLISECONDS, TransportException.Wrapper);
+                if (response.getHeader().getStatusCode() == NtStatus.STATUS_END_OF_FILE.getValue()) {
+                    // The reads beyond are discarded, because the file may have grown meanwhile, which would leave a hole
+                    break;
+                }
+                if (!response.isSuccess()) {
+                    throw new SMBApiException(response.getHeader(), String.format("Read of '%s' at offset '%d' failed", fileName, read.offset));
+                }
+                final int length = Math.min(response.getDataLength(), read.length);
+                if (length > 0) {
+                    sink.write(read.offset, ByteBuffer.wrap(response.getData(), 0, length));
+                    end = read.offset + length;
+                }
+                if (length < read.length) {
+                    if (length == 0) {
+                        break;
+                    }
+                    // The server may return less than requested, therefore the missing part is read before any later chunk is handed to the sink
+                    inFlight.addFirst(sendRead(end, read.length - length));
+                }
+            }
+        } finally {
+            // Responses of outstanding reads must be awaited, so they do not interfere with subsequent requests on the file handle
+            for (final PendingRead read : inFlight) {
+                try {
+                    Futures.get(read.future, readTimeout, TimeUnit.MILLISECONDS, TransportException.Wrapper);
+                } catch (Exception e) {
+                    // ignore, because the transfer already failed or is complete
+                }
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Sends a read request, whereby the server is asked for fewer bytes than requested if fewer credits have been granted to the request.
+     *
+     * @param offset the offset in the remote file to read at
+     * @param length the number of bytes to read
+     * @return the read in flight, whose length is the number of bytes the server has actually been asked for
+     * @throws TransportException if the request cannot be sent
+     */
+    private PendingRead sendRead(final long offset,
+                                 final int length) throws TransportException {
+        final SMB2ReadRequest request = new SMB2ReadRequest(dialect, fileId, session.getSessionId(), treeId, offset, length);
+        final Future<SMB2ReadResponse> future = session.send(request);
+        // The read length of the request is the payload size of the credits granted to it
+        return new PendingRead(offset, (int) Math.min(length, (long) request.getCreditsAssigned() * CREDIT_PAYLOAD_SIZE), future);
+    }
+
+    /**
+     * Uploads the content of the given stream into the remote file, starting at the given offset.
+     * The chunk buffers are acquired from the pool and given back as soon as the write request of a chunk has been acknowledged.
+     *
+     * @param inputStream the stream to upload
+     * @param offset      the offset in the remote file to start writing at
+     * @return the number of uploaded bytes
+     * @throws IOException if reading the stream or the upload fails
+     */
+    public long upload(final InputStream inputStream,
+                       final long offset) throws IOException {
+        return upload(new ChunkSource() {
+            private boolean eof = false;
+
+            @Override
+            public SmbByteBufferChunkProvider next(final long fileOffset) throws IOException {
+                if (eof) {
+                    return null;
+                }
+                final byte[] buffer = bufferPool.acquire(writeChunkSize);
+                final int length;
+                try {
+                    length = readFully(inputStream, buffer);
+                } catch (IOException | RuntimeException e) {
+                    bufferPool.release(buffer);
+                    throw e;
+                }
+                eof = length < buffer.length;
+                if (length == 0) {
+                    bufferPool.release(buffer);
+                    return null;
+                }
+                return new SmbByteBufferChunkProvider(ByteBuffer.wrap(buffer, 0, length), fileOffset, bufferPool);
+            }
+
+            @Override
+            public void release(final SmbByteBufferChunkProvider provider) {
+                bufferPool.release(provider.getData().array());
+            }
+        }, offset);
+    }
+
+    /**
+     * Uploads the content of the given buffer between its position and limit into the remote file, starting at the given offset.
+     * The chunks are slices of the buffer, so its content is not copied before it gets written into the requests.
+     *
+     * @param data   the buffer to upload, whose position is not modified
+     * @param offset the offset in the remote file to start writing at
+     * @return the number of uploaded bytes
+     * @throws IOException if the upload fails
+     */
+    public long upload(final ByteBuffer data,
+                       final long offset) throws IOException {
+        return upload(chunksOf(data), offset);
+    }
+
+    /**
+     * Uploads the content of the given local file channel into the remote file, starting at the given offset.
+     * The chunks are read by positional reads into pooled buffers, which are given back as soon as their writes have been acknowledged,
+     * so the local file is not mapped and can be moved or deleted right after the upload.
+     *
+     * @param channel the local file channel to upload from its start
+     * @param offset  the offset in the remote file to start writing at
+     * @return the number of uploaded bytes
+     * @throws IOException if reading the local file or the upload fails
+     */
+    public long upload(final FileChannel channel,
+                       final long offset) throws IOException {
+        return upload(chunksOf(channel), offset);
+    }
+
+    /**
+     * Starts uploading the content of the given buffer between its position and limit into the remote file without
+     * waiting for any response. The returned upload must be advanced until it is complete, whereby it also closes the remote file.
+     *
+     * @param data   the buffer to upload, whose position is not modified and which must not be modified until the upload is complete
+     * @param offset the offset in the remote file to start writing at
+     * @return the started upload
+     * @throws IOException if sending the first write requests fails
+     */
+    public AsyncUpload uploadAsync(final ByteBuffer data,
+                                   final long offset) throws IOException {
+        return new AsyncUpload(chunksOf(data), offset);
+    }
+
+    /**
+     * Starts uploading the content of the given local file channel into the remote file without waiting for any response.
+     * The returned upload must be advanced until it is complete, whereby it also closes the remote file.
+     *
+     * @param channel the local file channel to upload from its start, which must stay open until the upload is complete
+     * @param offset  the offset in the remote file to start writing at
+     * @return the started upload
+     * @throws IOException if reading the local file or sending the first write requests fails
+     */
+    public AsyncUpload uploadAsync(final FileChannel channel,
+                                   final long offset) throws IOException {
+        return new AsyncUpload(chunksOf(channel), offset);
+    }
+
+    /**
+     * @param data the buffer to provide the chunks of between its position and limit, whose position is not modified
+     * @return the source providing slices of the buffer
+     */
+    private ChunkSource chunksOf(final ByteBuffer data) {
+        final ByteBuffer remaining = data.duplicate();
+        return fileOffset -> (remaining.hasRemaining()) ? new SmbByteBufferChunkProvider(slice(remaining, writeChunkSize), fileOffset, bufferPool) : null;
+    }
+
+    /**
+     * @param channel the local file channel to provide the chunks of from its start
+     * @return the source reading the chunks of the local file into pooled buffers by positional reads
+     * @throws IOException if the size of the local file cannot be determined
+     */
+    private ChunkSource chunksOf(final FileChannel channel) throws IOException {
+        final long size = channel.size();
+        return new ChunkSource() {
+            private long position = 0;
+
+            @Override
+            public SmbByteBufferChunkProvider next(final long fileOffset) throws IOException {
+                if (position >= size) {
+                    return null;
+                }
+                final byte[] buffer = bufferPool.acquire(writeChunkSize);
+                final ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, size - position));
+                try {
+                    while (chunk.hasRemaining()) {
+                        if (channel.read(chunk, position + chunk.position()) < 0) {
+                            throw new IOException(String.format("Local file of '%s' ended after '%d' of '%d' bytes", fileName, position + chunk.position(), size));
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    bufferPool.release(buffer);
+                    throw e;
+                }
+                chunk.flip();
+                position += chunk.remaining();
+                return new SmbByteBufferChunkProvider(chunk, fileOffset, bufferPool);
+            }
+
+            @Override
+            public void release(final SmbByteBufferChunkProvider provider) {
+                bufferPool.release(provider.getData().array());
+            }
+        };
+    }
+
+    /**
+     * Keeps writing the chunks of the given source with up to the configured number of write requests in flight.
+     *
+     * @param source the source of the chunks
+     * @param offset the offset in the remote file to start writing at
+     * @return the number of uploaded bytes
+     * @throws IOException if the source or the upload fails
+     */
+    private long upload(final ChunkSource source,
+                        final long offset) throws IOException {
+        final Deque<PendingWrite> inFlight = new ArrayDeque<>(uploadPipelineDepth);
+        long nextOffset = offset;
+        boolean exhausted = false;
+        try {
+            while (true) {
+                while (!exhausted && inFlight.size() < uploadPipelineDepth) {
+                    final SmbByteBufferChunkProvider provider = source.next(nextOffset);
+                    if (provider == null) {
+                        exhausted = true;
+                        break;
+                    }
+                    final int length = provider.bytesLeft();
+                    sendChunk(new Chunk(provider), provider, inFlight);
+                    nextOffset += length;
+                }
+                final PendingWrite write = inFlight.pollFirst();
+                if (write == null) {
+                    return nextOffset - offset;
+                }
+                if (acknowledge(write, inFlight)) {
+                    source.release(write.chunk.provider);
+                }
+            }
+        } finally {
+            // Responses of outstanding writes must be awaited, so they do not interfere with subsequent requests on the file handle
+            for (final PendingWrite write : inFlight) {
+                try {
+                    Futures.get(write.future, writeTimeout, TimeUnit.MILLISECONDS, TransportException.Wrapper);
+                    if (--write.chunk.outstanding == 0) {
+                        source.release(write.chunk.provider);
+                    }
+                } catch (Exception e) {
+                    // ignore, because the transfer already failed, and do not reuse a buffer whose request may still be sent
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the remaining content of the given provider. A write request only carries the payload size of the credits granted to it,
+     * therefore further write requests are sent until the provider is drained.
+     *
+     * @param chunk    the chunk the content belongs to
+     * @param provider the provider of the content to send, which is positioned at its offset in the remote file
+     * @param inFlight the writes in flight to add the sent write requests to
+     * @throws IOException if a write request cannot be sent
+     */
+    private void sendChunk(final Chunk chunk,
+                           final SmbByteBufferChunkProvider provider,
+                           final Deque<PendingWrite> inFlight) throws IOException {
+        while (provider.bytesLeft() > 0) {
+            final long fileOffset = provider.getOffset();
+            final ByteBuffer content = provider.getData().duplicate();
+            final int length = provider.bytesLeft();
+            final Future<SMB2WriteResponse> future = session.send(new SMB2WriteRequest(dialect, fileId, session.getSessionId(), treeId, provider, length));
+            final int sent = length - provider.bytesLeft();
+            if (sent <= 0) {
+                throw new IOException(String.format("Write to '%s' at offset '%d' could not send any bytes", fileName, fileOffset));
+            }
+            content.limit(content.position() + sent);
+            chunk.outstanding++;
+            inFlight.addLast(new PendingWrite(fileOffset, sent, content, chunk, future));
+        }
+    }
+
+    /**
+     * Handles the response of a write request, whereby the part which has not been written is sent again.
+     *
+     * @param write    the write request
+     * @param inFlight the writes in flight to add the write requests of the unwritten part to
+     * @return true if all writes of the chunk have been acknowledged, so its buffer can be given back, false otherwise
+     * @throws IOException if the write failed or made no progress
+     */
+    private boolean acknowledge(final PendingWrite write,
+                                final Deque<PendingWrite> inFlight) throws IOException {
+        final SMB2WriteResponse response = Futures.get(write.future, writeTimeout, TimeUnit.MILLISECONDS, TransportException.Wrapper);
+        if (!response.isSuccess()) {
+            throw new SMBApiException(response.getHeader(), String.format("Write to '%s' at offset '%d' failed", fileName, write.offset));
+        }
+        final long written = response.getBytesWritten();
+        if (written < write.length) {
+            // The connection is fine, the server just wrote less than requested
+            if (written <= 0) {
+                throw new IOException(String.format("Write to '%s' at offset '%d' wrote '%d' of '%d' bytes", fileName, write.offset, written, write.length));
+            }
+            final ByteBuffer remainder = write.content.duplicate();
+            remainder.position(remainder.position() + (int) written);
+            sendChunk(write.chunk, new SmbByteBufferChunkProvider(remainder, write.offset + written, bufferPool), inFlight);
+        }
+        return --write.chunk.outstanding == 0;
+    }
+
+    /**
+     * Waits until the response has arrived or the timeout has elapsed. The outcome of the response is not evaluated,
+     * which is left to the one who polls it.
+     *
+     * @param future        the response to wait for, or null if there is nothing to wait for
+     * @param timeoutMillis the maximum time to wait in milliseconds
+     * @throws InterruptedException if the current thread has been interrupted while waiting
+     */
+    static void awaitResponse(final Future<?> future,
+                              final long timeoutMillis) throws InterruptedException {
+        if (future != null && !future.isDone()) {
+            try {
+                future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                // The failure is raised when the response is polled
+            }
+        }
+        // The futures of smbj wrap an interruption into their failure, so it is checked separately
+        if (Thread.interrupted()) {
+            throw new InterruptedException("Interrupted while waiting for a response");
+        }
+    }
+
+    /**
+     * @param size the size to round
+     * @return the size rounded down to a multiple of the payload size of a credit, but at least one credit
+     */
+    private static int roundToCredits(final int size) {
+        return Math.max(CREDIT_PAYLOAD_SIZE, size - (size % CREDIT_PAYLOAD_SIZE));
+    }
+
+    /**
+     * Slices the next chunk off the given buffer and advances its position behind the chunk.
+     *
+     * @param buffer the buffer to slice the chunk off
+     * @param length the maximum length of the chunk
+     * @return the chunk, which shares the content of the given buffer
+     */
+    private static ByteBuffer slice(final ByteBuffer buffer,
+                                    final int length) {
+        final ByteBuffer chunk = buffer.slice();
+        chunk.limit(Math.min(length, chunk.remaining()));
+        buffer.position(buffer.position() + chunk.limit());
+        return chunk;
+    }
+
+    /**
+     * Reads from the stream until the buffer is full or the end of the stream is reached.
+     *
+     * @param inputStream the stream to read from
+     * @param buffer      the buffer to fill
+     * @return the number of bytes read into the buffer
+     * @throws IOException if reading the stream fails
+     */
+    private static int readFully(final InputStream inputStream,
+                                 final byte[] buffer) throws IOException {
+        int length = 0;
+        int read;
+        while (length < buffer.length && (read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+        }
+        return length;
+    }
+
+    /**
+     * An upload which does not block on any response. It keeps up to the configured number of write requests in flight,
+     * and sends the close request of the remote file as soon as all writes have been acknowledged.
+     * It is advanced by polling, which checks the responses which have arrived meanwhile.
+     */
+    public final class AsyncUpload {
+
+        private final ChunkSource source;
+        private final long offset;
+        private final Deque<PendingWrite> inFlight = new ArrayDeque<>(uploadPipelineDepth);
+        private long nextOffset;
+        private boolean exhausted = false;
+        private Future<SMB2Close> close;
+        private long closeSentAt;
+
+        private AsyncUpload(final ChunkSource source,
+                            final long offset) throws IOException {
+            this.source = source;
+            this.offset = offset;
+            this.nextOffset = offset;
+            fill();
+        }
+
+        /**
+         * Handles the responses which have arrived in order and sends further requests, without waiting for any response.
+         *
+         * @return true if all writes and the close of the remote file have been acknowledged, false otherwise
+         * @throws IOException if a request failed or the response to the oldest request is overdue
+         */
+        public boolean poll() throws IOException {
+            if (close == null) {
+                PendingWrite write;
+                while ((write = inFlight.peekFirst()) != null && write.future.isDone()) {
+                    inFlight.pollFirst();
+                    if (acknowledge(write, inFlight)) {
+                        source.release(write.chunk.provider);
+                    }
+                }
+                fill();
+                if (!inFlight.isEmpty()) {
+                    checkOverdue(inFlight.peekFirst().sentAt, "Write");
+                    return false;
+                }
+                close = session.send(new SMB2Close(dialect, session.getSessionId(), treeId, fileId));
+                closeSentAt = System.currentTimeMillis();
+            }
+            if (!close.isDone()) {
+                checkOverdue(closeSentAt, "Close");
+                return false;
+            }
+            final SMB2Close response = Futures.get(close, writeTimeout, TimeUnit.MILLISECONDS, TransportException.Wrapper);
+            if (!response.isSuccess()) {
+                throw new SMBApiException(response.getHeader(), String.format("Close of '%s' failed", fileName));
+            }
+            return true;
+        }
+
+        /**
+         * Waits until the response to the oldest outstanding request has arrived or the timeout has elapsed.
+         *
+         * @param timeoutMillis the maximum time to wait in milliseconds
+         * @throws InterruptedException if the current thread has been interrupted while waiting
+         */
+        public void awaitResponse(final long timeoutMillis) throws InterruptedException {
+            SmbPipelinedTransfer.awaitResponse((close != null) ? close : Optional.ofNullable(inFlight.peekFirst()).map(write -> write.future).orElse(null), timeoutMillis);
+        }
+
+        /**
+         * @return the time the oldest outstanding request has been sent at, or Long.MAX_VALUE if no request is outstanding
+         */
+        public long getWaitingSince() {
+            if (close != null) {
+                return closeSentAt;
+            }
+            return inFlight.isEmpty() ? Long.MAX_VALUE : inFlight.peekFirst().sentAt;
+        }
+
+        /**
+         * @return true if the close request of the remote file has been sent, so it must not be closed again, false otherwise
+         */
+        public boolean isClosing() {
+            return close != null;
+        }
+
+        /**
+         * @return the number of bytes which have been sent so far
+         */
+        public long getSentBytes() {
+            return nextOffset - offset;
+        }
+
+        private void fill() throws IOException {
+            while (!exhausted && inFlight.size() < uploadPipelineDepth) {
+                final SmbByteBufferChunkProvider provider = source.next(nextOffset);
+                if (provider == null) {
+                    exhausted = true;
+                    break;
+                }
+                final int length = provider.bytesLeft();
+                sendChunk(new Chunk(provider), provider, inFlight);
+                nextOffset += length;
+            }
+        }
+
+        private void checkOverdue(final long sentAt,
+                                  final String request) throws TransportException {
+            if (writeTimeout > 0 && System.currentTimeMillis() - sentAt > writeTimeout) {
+                throw new TransportException(String.format("%s of '%s' has not been acknowledged within '%d' milliseconds", request, fileName, writeTimeout));
+            }
+        }
+    }
+
+    /**
+     * The source of the chunks of an upload.
+     */
+    @FunctionalInterface
+    private interface ChunkSource {
+
+        /**
+         * @param fileOffset the offset in the remote file the next chunk is written at
+         * @return the provider of the next chunk, or null if there are no more chunks
+         * @throws IOException if the next chunk cannot be provided
+         */
+        SmbByteBufferChunkProvider next(long fileOffset) throws IOException;
+
+        /**
+         * @param provider the provider of a chunk, whose write requests have all been acknowledged
+         */
+        default void release(final SmbByteBufferChunkProvider provider) {
+        }
+    }
+
+    /**
+     * The sink of the chunks of a download.
+     */
+    @FunctionalInterface
+    public interface ChunkSink {
+
+        /**
+         * @param position the offset of the chunk in the remote file
+         * @param data     the content of the chunk, which is only valid during this call
+         * @throws IOException if the chunk cannot be written
+         */
+        void write(long position, ByteBuffer data) throws IOException;
+    }
+
+    /**
+     * A chunk of an upload, which may be written by multiple write requests, and the number of them which are in flight.
+     */
+    private static final class Chunk {
+
+        private final SmbByteBufferChunkProvider provider;
+        private int outstanding = 0;
+
+        private Chunk(final SmbByteBufferChunkProvider provider) {
+            this.provider = provider;
+        }
+    }
+
+    /**
+     * A write request which is in flight, together with the content it has sent.
+     */
+    private static final class PendingWrite {
+
+        private final long offset;
+        private final int length;
+        private final ByteBuffer content;
+        private final Chunk chunk;
+        private final Future<SMB2WriteResponse> future;
+        private final long sentAt = System.currentTimeMillis();
+
+        private PendingWrite(final long offset,
+                             final int length,
+                             final ByteBuffer content,
+                             final Chunk chunk,
+                             final Future<SMB2WriteResponse> future) {
+            this.offset = offset;
+            this.length = length;
+            this.content = content;
+            this.chunk = chunk;
+            this.future = future;
+        }
+    }
+
+    /**
+     * A read request which is in flight.
+     */
+    private static final class PendingRead {
+
+        private final long offset;
+        private final int length;
+        private final Future<SMB2ReadResponse> future;
+
+        private PendingRead(final long offset,
+                            final int length,
+                            final Future<SMB2ReadResponse> future) {
+            this.offset = offset;
+            this.length = length;
+            this.future = future;
+        }
+    }
+}
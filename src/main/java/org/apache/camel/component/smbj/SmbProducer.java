@@ -16,9 +16,18 @@
  */
 package org.apache.camel.component.smbj;
 
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.AsyncProcessor;
+import org.apache.camel.Exchange;
+import org.apache.camel.WrappedFile;
+import org.apache.camel.component.file.GenericFileExist;
 import org.apache.camel.component.file.GenericFileProducer;
+import org.apache.camel.util.FileUtil;
 
+import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
 
 /**
  * This class is the smb consumer implementation.
@@ -26,7 +35,11 @@ import java.util.Objects;
  * @author Thomas Herzog <herzog.thomas81@gmail.com>
  * @since 10/26/2018
  */
-public class SmbProducer extends GenericFileProducer<SmbFile> {
+public class SmbProducer extends GenericFileProducer<SmbFile> implements AsyncProcessor {
+
+    private SmbAsyncUploader asyncUploader;
+    private ExecutorService asyncUploaderExecutor;
+    private ExecutorService asyncCompletionExecutor;
 
     public SmbProducer(final SmbEndpoint endpoint,
                        final SmbFileOperations operations) {
@@ -38,4 +51,169 @@ public class SmbProducer extends GenericFileProducer<SmbFile> {
     public String getFileSeparator() {
         return "\\";
     }
+
+    @Override
+    public SmbEndpoint getEndpoint() {
+        return (SmbEndpoint) super.getEndpoint();
+    }
+
+    /**
+     * Writes the file without blocking the calling thread if the producer is asynchronous and the exchange qualifies,
+     * otherwise the file is written synchronously.
+     *
+     * @param exchange the exchange holding the body to write
+     * @param callback the callback which is done when the file has been written
+     * @return true if the file has been written synchronously, false if the callback will be done asynchronously
+     */
+    @Override
+    public boolean process(final Exchange exchange,
+                           final AsyncCallback callback) {
+        if (asyncUploader == null || !isAsyncStorable(exchange)) {
+            try {
+                process(exchange);
+            } catch (Exception e) {
+                exchange.setException(e);
+            }
+            callback.done(true);
+            return true;
+        }
+
+        // Keeps the file name header the same way as a synchronous write does
+        final String existing = exchange.getIn().getHeader(Exchange.FILE_NAME, String.class);
+        final String target;
+        try {
+            target = createFileName(exchange);
+        } catch (Exception e) {
+            exchange.setException(e);
+            callback.done(true);
+            return true;
+        }
+        return asyncUploader.submit(target,
+                                    () -> startStore(exchange, target),
+                                    (store, error) -> completeStore(exchange, target, existing, error),
+                                    callback);
+    }
+
+    /**
+     * Writes the file synchronously, whereby the write waits for the asynchronous stores of the same target, if the producer is asynchronous.
+     *
+     * @param exchange the exchange holding the body to write
+     * @param target   the name of the target file
+     * @throws Exception if the write failed
+     */
+    @Override
+    protected void processExchange(final Exchange exchange,
+                                   final String target) throws Exception {
+        final SmbAsyncUploader uploader = asyncUploader;
+        if (uploader == null) {
+            super.processExchange(exchange, target);
+            return;
+        }
+        uploader.runExclusively(target, () -> {
+            SmbProducer.super.processExchange(exchange, target);
+            return null;
+        });
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        if (getEndpoint().isAsyncProducer()) {
+            asyncCompletionExecutor = getEndpoint().getCamelContext().getExecutorServiceManager().newCachedThreadPool(this, "SmbAsyncCompletion");
+            asyncUploader = new SmbAsyncUploader(asyncCompletionExecutor);
+            asyncUploaderExecutor = getEndpoint().getCamelContext().getExecutorServiceManager().newSingleThreadExecutor(this, "SmbAsyncUploader");
+            asyncUploaderExecutor.submit(asyncUploader);
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        if (asyncUploader != null) {
+            // The uploader completes the stores which are in flight before its thread ends
+            asyncUploader.close();
+            getEndpoint().getCamelContext().getExecutorServiceManager().shutdownGraceful(asyncUploaderExecutor);
+            getEndpoint().getCamelContext().getExecutorServiceManager().shutdownGraceful(asyncCompletionExecutor);
+            asyncUploader = null;
+            asyncUploaderExecutor = null;
+            asyncCompletionExecutor = null;
+        }
+        super.doStop();
+    }
+
+    /**
+     * Answers the question whether the exchange can be written asynchronously, which requires a body whose content is available
+     * without reading a stream and a strategy for existing files which the server resolves when the file is created.
+     *
+     * @param exchange the exchange to write
+     * @return true if the exchange can be written asynchronously, false otherwise
+     */
+    private boolean isAsyncStorable(final Exchange exchange) {
+        final GenericFileExist fileExist = getEndpoint().getFileExist();
+        if (getEndpoint().getTempFileName() != null
+                || getEndpoint().getDoneFileName() != null
+                || (fileExist != GenericFileExist.Override && fileExist != GenericFileExist.Fail && fileExist != GenericFileExist.Ignore)) {
+            return false;
+        }
+        final Object body = exchange.getMessage().getBody();
+        final Object wrapped = (body instanceof WrappedFile) ? ((WrappedFile<?>) body).getFile() : body;
+        return wrapped instanceof File || body instanceof byte[] || body instanceof ByteBuffer || body instanceof String;
+    }
+
+    /**
+     * Starts the store once the target is no longer in use, with the same checks as a synchronous write does.
+     *
+     * @param exchange the exchange holding the body to write
+     * @param target   the name of the target file
+     * @return the started store, or null if there is nothing to store
+     * @throws Exception if the checks failed or the store could not be started
+     */
+    private SmbAsyncFileStore startStore(final Exchange exchange,
+                                         final String target) throws Exception {
+        preWriteCheck();
+        buildParentDirectory(target);
+        return ((SmbFileOperations) operations).storeFileAsync(target, exchange);
+    }
+
+    /**
+     * Builds the parent directory of the target file the same way as a synchronous write does.
+     *
+     * @param target the name of the target file
+     */
+    private void buildParentDirectory(final String target) {
+        if (getEndpoint().isAutoCreate()) {
+            final File file = new File(FileUtil.normalizePath(target));
+            final String directory = file.getParent();
+            if (directory != null && !operations.buildDirectory(directory, FileUtil.isAbsolute(file))) {
+                log.debug(String.format("Cannot build directory '%s' (could be because of denied permissions)", directory));
+            }
+        }
+    }
+
+    /**
+     * Completes the exchange the same way as a synchronous write does.
+     *
+     * @param exchange the written exchange
+     * @param target   the name of the target file
+     * @param existing the file name header before the write, which is restored
+     * @param error    the failure of the write, or null if the file has been written
+     */
+    private void completeStore(final Exchange exchange,
+                               final String target,
+                               final String existing,
+                               final Exception error) {
+        try {
+            if (error != null) {
+                handleFailedWrite(exchange, error);
+            } else {
+                exchange.getIn().setHeader(Exchange.FILE_NAME_PRODUCED, target);
+            }
+        } catch (Exception e) {
+            exchange.setException(e);
+        } finally {
+            postWriteCheck(exchange);
+            // The overruling file name is only used once, as for a synchronous write
+            exchange.getIn().removeHeader(Exchange.OVERRULE_FILE_NAME);
+            exchange.getIn().setHeader(Exchange.FILE_NAME, existing);
+        }
+    }
 }
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+/**
+ * This utility class converts simple file name filters into search patterns of a SMB2 QUERY_DIRECTORY request.
+ * A search pattern only reduces the entries returned by the server, the filters are still applied on the client,
+ * therefore a converted pattern may match more names than the filter, but never less.
+ * Filters which cannot be converted safely result in null.
+ *
+ * @since 10/16/2026
+ */
+public class SmbSearchPatternUtils {
+
+    private static final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+    private static final String UNSUPPORTED_CHARACTERS = "<>\"/\\:|";
+
+    private SmbSearchPatternUtils() {
+    }
+
+    /**
+     * @param fileName the evaluated fileName option
+     * @return the search pattern matching exactly this file name, or null if it cannot be converted
+     */
+    public static String fromFileName(final String fileName) {
+        if (fileName == null || fileName.isEmpty()) {
+            return null;
+        }
+        for (final char c : fileName.toCharArray()) {
+            if (c == '*' || c == '?' || UNSUPPORTED_CHARACTERS.indexOf(c) >= 0) {
+                return null;
+            }
+        }
+        return fileName;
+    }
+
+    /**
+     * The ant path matcher trims the names before matching them, so a name with leading or trailing whitespace matches as well,
+     * therefore the converted pattern is surrounded by '*'.
+     *
+     * @param antInclude the antInclude option, which must consist of a single pattern without path separators
+     * @return the search pattern, or null if it cannot be converted
+     */
+    public static String fromAntInclude(final String antInclude) {
+        if (antInclude == null || antInclude.trim().isEmpty() || antInclude.contains(",")) {
+            return null;
+        }
+        final StringBuilder pattern = new StringBuilder("*");
+        for (final char c : antInclude.trim().toCharArray()) {
+            if (UNSUPPORTED_CHARACTERS.indexOf(c) >= 0) {
+                return null;
+            }
+            appendCollapsed(pattern, c);
+        }
+        appendCollapsed(pattern, '*');
+        return nullIfMatchAll(pattern);
+    }
+
+    /**
+     * Converts a regular expression which consists of literals, escaped literals, '.' and '.*' only.
+     * A '.' matches a supplementary character, which are two chars of a name, whereas '?' of a search pattern matches a single char,
+     * therefore '.' is converted to '*' as well.
+     *
+     * @param regex the include option
+     * @return the search pattern, or null if it cannot be converted
+     */
+    public static String fromRegex(final String regex) {
+        if (regex == null || regex.isEmpty()) {
+            return null;
+        }
+        int index = regex.startsWith("^") ? 1 : 0;
+        int end = (regex.endsWith("$") && !regex.endsWith("\\$")) ? (regex.length() - 1) : regex.length();
+        final StringBuilder pattern = new StringBuilder();
+        while (index < end) {
+            final char c = regex.charAt(index);
+            final char next = (index + 1 < end) ? regex.charAt(index + 1) : 0;
+            if (c == '.' && next == '*') {
+                appendCollapsed(pattern, '*');
+                index += 2;
+                continue;
+            }
+            // Quantifiers on anything else than '.' are not supported
+            if (next == '*' || next == '+' || next == '?' || next == '{') {
+                return null;
+            }
+            if (c == '.') {
+                appendCollapsed(pattern, '*');
+                index++;
+            } else if (c == '\\') {
+                // Escaped letters and digits are character classes such as \d, which are not supported
+                if (next == 0 || Character.isLetterOrDigit(next) || UNSUPPORTED_CHARACTERS.indexOf(next) >= 0 || next == '*' || next == '?') {
+                    return null;
+                }
+                pattern.append(next);
+                index += 2;
+            } else if (REGEX_META_CHARACTERS.indexOf(c) >= 0 || UNSUPPORTED_CHARACTERS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                pattern.append(c);
+                index++;
+            }
+        }
+        return nullIfMatchAll(pattern);
+    }
+
+    private static void appendCollapsed(final StringBuilder pattern,
+                                        final char c) {
+        if (c != '*' || pattern.length() == 0 || pattern.charAt(pattern.length() - 1) != '*') {
+            pattern.append(c);
+        }
+    }
+
+    private static String nullIfMatchAll(final StringBuilder pattern) {
+        return (pattern.length() == 0 || "*".contentEquals(pattern)) ? null : pattern.toString();
+    }
+}
@@ -0,0 +1,352 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.session.Session;
+import org.apache.camel.component.file.GenericFileOperationFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * This class is the registry of the authenticated sessions of a component, which are shared by all endpoints
+ * connecting to the same server with the same credentials.
+ * Sessions which are not in use anymore are kept open until the least recently used ones get evicted,
+ * because the maximum number of sessions has been exceeded.
+ *
+ * @since 10/16/2026
+ */
+public class SmbSessionRegistry implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SmbSessionRegistry.class);
+    private final int maxSessions;
+    private final LinkedHashMap<SessionKey, SessionHolder> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Session, SessionHolder> holders = new IdentityHashMap<>();
+    private final Map<SessionKey, CompletableFuture<Session>> authentications = new HashMap<>();
+    private boolean closed = false;
+
+    /**
+     * @param maxSessions the maximum number of sessions to keep open, whereby sessions in use are never evicted
+     */
+    public SmbSessionRegistry(final int maxSessions) {
+        this.maxSessions = Math.max(1, maxSessions);
+    }
+
+    /**
+     * Acquires the session for the server and credentials of the given configuration. An open session is reused,
+     * otherwise a new session is authenticated on a connection of the given client.
+     * The authentication runs outside of the registry lock, so a slow or unreachable server only delays the acquisitions
+     * of its own session, which wait for the authentication in progress instead of starting another one.
+     * An acquired session must be given back via {@link #release(Session)}.
+     *
+     * @param client        the client to connect with
+     * @param configuration the configuration holding the server and credentials
+     * @return the acquired session
+     */
+    public Session acquire(final SMBClient client,
+                           final SmbConfiguration configuration) {
+        final SessionKey key = new SessionKey(client, configuration);
+        while (true) {
+            final CompletableFuture<Session> authentication;
+            final CompletableFuture<Session> running;
+            synchronized (this) {
+                if (closed) {
+                    throw new GenericFileOperationFailedException("Cannot acquire a session from a closed registry");
+                }
+                final SessionHolder holder = sessions.get(key);
+                if (holder != null && !holder.session.getConnection().isConnected()) {
+                    LOG.debug(String.format("Discarding session '%s' of lost connection", key));
+                    sessions.remove(key);
+                    holder.discarded = true;
+                    closeIfUnused(holder);
+                } else if (holder != null) {
+                    holder.references++;
+                    return holder.session;
+                }
+                running = authentications.get(key);
+                if (running == null) {
+                    authentication = new CompletableFuture<>();
+                    authentications.put(key, authentication);
+                } else {
+                    authentication = null;
+                }
+            }
+            if (authentication != null) {
+                return register(key, authentication, client, configuration);
+            }
+            waitFor(key, running);
+            // The session authenticated by the other acquisition is registered now, unless it got discarded meanwhile
+        }
+    }
+
+    /**
+     * Authenticates a new session outside of the registry lock and registers it as acquired.
+     *
+     * @param key            the key of the session
+     * @param authentication the future the concurrent acquisitions of the same key wait for
+     * @param client         the client to connect with
+     * @param configuration  the configuration holding the server and credentials
+     * @return the acquired session
+     */
+    private Session register(final SessionKey key,
+                             final CompletableFuture<Session> authentication,
+                             final SMBClient client,
+                             final SmbConfiguration configuration) {
+        final Session session;
+        try {
+            session = authenticate(client, configuration);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                authentications.remove(key);
+            }
+            authentication.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            authentications.remove(key);
+            if (closed) {
+                closeQuietly(session, key);
+                final GenericFileOperationFailedException error = new GenericFileOperationFailedException("Cannot acquire a session from a closed registry");
+                authentication.completeExceptionally(error);
+                throw error;
+            }
+            final SessionHolder holder = new SessionHolder(key, session);
+            holder.references++;
+            sessions.put(key, holder);
+            holders.put(session, holder);
+            evictLeastRecentlyUsed();
+        }
+        authentication.complete(session);
+        return session;
+    }
+
+    /**
+     * Waits for the authentication of a session by a concurrent acquisition, which must not be done within the registry lock.
+     *
+     * @param key            the key of the session
+     * @param authentication the authentication in progress
+     */
+    private void waitFor(final SessionKey key,
+                         final CompletableFuture<Session> authentication) {
+        try {
+            authentication.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenericFileOperationFailedException(String.format("Interrupted while waiting for the authentication of session '%s'", key), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new GenericFileOperationFailedException(String.format("Could not authenticate session '%s'", key), e.getCause());
+        }
+    }
+
+    /**
+     * Gives an acquired session back.
+     *
+     * @param session the acquired session
+     */
+    public synchronized void release(final Session session) {
+        final SessionHolder holder = holders.get(session);
+        if (holder == null) {
+            return;
+        }
+        holder.references--;
+        if (closed || holder.discarded) {
+            closeIfUnused(holder);
+        } else {
+            evictLeastRecentlyUsed();
+        }
+    }
+
+    /**
+     * Answers the question whether the given session is still registered and therefore usable.
+     *
+     * @param session the session to check
+     * @return true if the session is usable, false otherwise
+     */
+    public synchronized boolean isValid(final Session session) {
+        final SessionHolder holder = holders.get(session);
+        return holder != null && !holder.discarded && session.getConnection().isConnected();
+    }
+
+    /**
+     * @return the number of registered sessions
+     */
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Closes all sessions which are not in use. Sessions in use are closed when they are given back.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (final SessionHolder holder : new ArrayList<>(holders.values())) {
+            holder.discarded = true;
+            closeIfUnused(holder);
+        }
+        sessions.clear();
+    }
+
+    private void evictLeastRecentlyUsed() {
+        final Iterator<SessionHolder> iterator = sessions.values().iterator();
+        while (sessions.size() > maxSessions && iterator.hasNext()) {
+            final SessionHolder holder = iterator.next();
+            if (holder.references <= 0) {
+                LOG.debug(String.format("Evicting least recently used session '%s'", holder.key));
+                iterator.remove();
+                holder.discarded = true;
+                closeIfUnused(holder);
+            }
+        }
+    }
+
+    private void closeIfUnused(final SessionHolder holder) {
+        if (holder.references > 0) {
+            return;
+        }
+        holders.remove(holder.session);
+        closeQuietly(holder.session, holder.key);
+    }
+
+    private static void closeQuietly(final Session session,
+                                     final SessionKey key) {
+        try {
+            session.close();
+        } catch (Exception e) {
+            LOG.trace(String.format("Error while closing session '%s' ignored", key), e);
+        }
+    }
+
+    private static Session authenticate(final SMBClient client,
+                                        final SmbConfiguration configuration) {
+        final Connection connection;
+        try {
+            if (configuration.getPort() == null) {
+                connection = client.connect(configuration.getHost());
+            } else {
+                connection = client.connect(configuration.getHost(), configuration.getPort());
+            }
+        } catch (IOException e) {
+            throw new GenericFileOperationFailedException("Could not create connection", e);
+        }
+        if (!configuration.isNtlmAuthentication()) {
+            throw new IllegalStateException("For now only NTLM authentication is supported");
+        }
+        return connection.authenticate(configuration.createAuthenticationContext());
+    }
+
+    /**
+     * The key of a session, which consists of the client, the server and the credentials.
+     * The client is part of the key, because sessions of clients with different configurations must not be mixed up.
+     * The password is only held as digest, together with the authentication type, so an endpoint with another password
+     * never gets a session which has been authenticated for another endpoint.
+     */
+    private static final class SessionKey {
+
+        private final SMBClient client;
+        private final String host;
+        private final Integer port;
+        private final String domain;
+        private final String username;
+        private final byte[] authenticationDigest;
+
+        private SessionKey(final SMBClient client,
+                           final SmbConfiguration configuration) {
+            this.client = client;
+            this.host = Optional.ofNullable(configuration.getHost()).orElse("").toLowerCase();
+            this.port = configuration.getPort();
+            this.domain = Optional.ofNullable(configuration.getDomain()).orElse("").toLowerCase();
+            this.username = Optional.ofNullable(configuration.getUsername()).orElse("").toLowerCase();
+            this.authenticationDigest = digest(configuration.getAuthType(), configuration.getPassword());
+        }
+
+        /**
+         * @param authType the authentication type
+         * @param password the password, which may be null
+         * @return the SHA-256 digest of the authentication type and the password
+         */
+        private static byte[] digest(final String authType,
+                                     final String password) {
+            try {
+                final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(Optional.ofNullable(authType).orElse("").toLowerCase().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(Optional.ofNullable(password).orElse("").getBytes(StandardCharsets.UTF_8));
+                return digest.digest();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final SessionKey that = (SessionKey) o;
+            return client == that.client
+                    && host.equals(that.host)
+                    && Objects.equals(port, that.port)
+                    && domain.equals(that.domain)
+                    && username.equals(that.username)
+                    && MessageDigest.isEqual(authenticationDigest, that.authenticationDigest);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(client), host, port, domain, username, Arrays.hashCode(authenticationDigest));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s\\%s@%s:%s", domain, username, host, Optional.ofNullable(port).map(String::valueOf).orElse("default"));
+        }
+    }
+
+    /**
+     * The holder of a registered session, which counts the references to it.
+     */
+    private static final class SessionHolder {
+
+        private final SessionKey key;
+        private final Session session;
+        private int references = 0;
+        private boolean discarded = false;
+
+        private SessionHolder(final SessionKey key,
+                              final Session session) {
+            this.key = key;
+            this.session = session;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import com.hierynomus.smbj.share.DiskShare;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * This class shares a single disk share borrowed from the pool among any number of concurrent users, which is possible
+ * as long as each user only sends requests without blocking on their responses, because smbj matches the responses by their message id.
+ * The disk share is borrowed by the first user and given back to the pool when the last user is done with it.
+ * A disk share which turned out to be broken is not handed out anymore, and it is discarded when its last user is done with it.
+ *
+ * @since 10/16/2026
+ */
+public class SmbSharedDiskShare {
+
+    private final SmbDiskSharePool pool;
+    private final Map<DiskShare, Integer> references = new IdentityHashMap<>();
+    private final Set<DiskShare> broken = Collections.newSetFromMap(new IdentityHashMap<>());
+    private DiskShare current;
+
+    /**
+     * @param pool the pool to borrow the disk share from
+     */
+    public SmbSharedDiskShare(final SmbDiskSharePool pool) {
+        this.pool = Objects.requireNonNull(pool, "Cannot share a disk share of a null pool");
+    }
+
+    /**
+     * Acquires the shared disk share. A disk share is only borrowed from the pool if none is currently shared.
+     *
+     * @return the shared disk share, which must be given back via {@link #release(DiskShare, Exception)}
+     * @throws org.apache.camel.component.file.GenericFileOperationFailedException if no disk share could be borrowed
+     */
+    public DiskShare acquire() {
+        synchronized (this) {
+            if (current != null && current.isConnected()) {
+                references.merge(current, 1, Integer::sum);
+                return current;
+            }
+        }
+        // Not borrowed within the lock, so the users of the shared disk share are not held up while the pool is exhausted
+        final DiskShare borrowed = pool.borrow();
+        final DiskShare shared;
+        final DiskShare retired;
+        synchronized (this) {
+            if (current != null && current.isConnected()) {
+                shared = current;
+                retired = null;
+            } else {
+                retired = retire();
+                current = borrowed;
+                shared = borrowed;
+            }
+            references.merge(shared, 1, Integer::sum);
+        }
+        if (shared != borrowed) {
+            pool.release(borrowed);
+        }
+        if (retired != null) {
+            pool.invalidate(retired);
+        }
+        return shared;
+    }
+
+    /**
+     * Gives the acquired disk share back. It is given back to the pool when it is not used anymore, whereby it is discarded
+     * if it turned out to be broken.
+     *
+     * @param share the acquired disk share
+     * @param error the error which occurred while the disk share was used, or null if it has been used successfully
+     */
+    public void release(final DiskShare share,
+                        final Exception error) {
+        final boolean invalidate;
+        synchronized (this) {
+            if (!references.containsKey(share)) {
+                return;
+            }
+            if (error != null && SmbDiskSharePool.isConnectionFailure(error)) {
+                broken.add(share);
+                if (share == current) {
+                    current = null;
+                }
+            }
+            final int remaining = references.merge(share, -1, Integer::sum);
+            if (remaining > 0) {
+                return;
+            }
+            references.remove(share);
+            if (share == current) {
+                current = null;
+            }
+            invalidate = broken.remove(share);
+        }
+        if (invalidate) {
+            pool.invalidate(share);
+        } else {
+            pool.release(share);
+        }
+    }
+
+    /**
+     * Stops handing out the current disk share, because it is not connected anymore.
+     *
+     * @return the disk share to discard right away, because it is not used anymore, or null if there is none
+     */
+    private DiskShare retire() {
+        final DiskShare retired = current;
+        current = null;
+        if (retired == null) {
+            return null;
+        }
+        if (references.containsKey(retired)) {
+            broken.add(retired);
+            return null;
+        }
+        return retired;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class collects a download in memory as long as it does not exceed a threshold, and spills it to a local file
+ * as soon as it does. If the size of the remote file is known upfront, then the memory buffer is allocated with the exact size,
+ * and a file exceeding the threshold is written to the local file right away.
+ *
+ * @since 10/16/2026
+ */
+public class SmbSpillingDownloadSink implements SmbPipelinedTransfer.ChunkSink, Closeable {
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    private static final int UNKNOWN_SIZE_INITIAL_CAPACITY = 64 * 1024;
+    private final Path spillFile;
+    private final long threshold;
+    private byte[] buffer;
+    private int length = 0;
+    private FileChannel channel;
+
+    /**
+     * @param spillFile the local file to spill to, or null if the download must fit into memory
+     * @param threshold the maximum number of bytes kept in memory
+     * @param sizeHint  the expected size of the remote file, or a negative value if it is unknown
+     * @throws IOException if the size is known to exceed the threshold and the local file cannot be created
+     */
+    public SmbSpillingDownloadSink(final Path spillFile,
+                                   final long threshold,
+                                   final long sizeHint) throws IOException {
+        this.spillFile = spillFile;
+        this.threshold = Math.min(Math.max(0, threshold), MAX_ARRAY_SIZE);
+        if (sizeHint > this.threshold && spillFile != null) {
+            this.buffer = new byte[0];
+            spill();
+        } else {
+            this.buffer = new byte[(int) ((sizeHint >= 0) ? Math.min(sizeHint, this.threshold) : Math.min(UNKNOWN_SIZE_INITIAL_CAPACITY, this.threshold))];
+        }
+    }
+
+    @Override
+    public void write(final long position,
+                      final ByteBuffer data) throws IOException {
+        final long end = position + data.remaining();
+        if (channel == null && end > threshold) {
+            if (spillFile == null) {
+                throw new IOException(String.format("Cannot download more than '%d' bytes into memory", threshold));
+            }
+            spill();
+        }
+        if (channel != null) {
+            long current = position;
+            while (data.hasRemaining()) {
+                current += channel.write(data, current);
+            }
+            return;
+        }
+        if (end > buffer.length) {
+            // The remote file has grown or its size was unknown
+            buffer = Arrays.copyOf(buffer, (int) Math.min(threshold, Math.max(end, 2L * buffer.length)));
+        }
+        data.get(buffer, (int) position, data.remaining());
+        length = (int) Math.max(length, end);
+    }
+
+    /**
+     * @return true if the download has been spilled to the local file, false if it is held in memory
+     */
+    public boolean isSpilled() {
+        return channel != null;
+    }
+
+    /**
+     * @return the local file to spill to, or null if the download must fit into memory
+     */
+    public Path getSpillFile() {
+        return spillFile;
+    }
+
+    /**
+     * Completes the download and opens a stream on its content. A spilled download is closed before the local file gets opened.
+     *
+     * @return the stream on the downloaded content
+     * @throws IOException if the local file cannot be opened
+     */
+    public InputStream openInputStream() throws IOException {
+        if (channel != null) {
+            close();
+            return new BufferedInputStream(Files.newInputStream(spillFile));
+        }
+        return new ByteArrayInputStream(buffer, 0, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Moves the content held in memory to the local file and continues writing to it.
+     *
+     * @throws IOException if the local file cannot be created or written
+     */
+    private void spill() throws IOException {
+        Files.createDirectories(spillFile.getParent());
+        Files.deleteIfExists(spillFile);
+        channel = FileChannel.open(spillFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        final ByteBuffer content = ByteBuffer.wrap(buffer, 0, length);
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+        buffer = null;
+    }
+}
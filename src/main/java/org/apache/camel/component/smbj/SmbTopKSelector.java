@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * This class selects the first elements of a stream in the given order without sorting the whole stream.
+ * The selected elements are held in a heap bounded by the limit, whose root is the last selected element,
+ * so an offered element either replaces the root or drops out right away.
+ * Elements which are equal in the given order keep the order they have been offered in, as a stable sort would do.
+ *
+ * @param <T> the type of the selected elements
+ * @since 10/16/2026
+ */
+public class SmbTopKSelector<T> {
+
+    // The heap grows with the offered elements, so a large limit does not allocate upfront
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+    private final int limit;
+    private final Comparator<Candidate<T>> order;
+    private final PriorityQueue<Candidate<T>> heap;
+    private long sequence = 0;
+
+    /**
+     * @param limit      the maximum number of selected elements
+     * @param comparator the order to select the elements in
+     */
+    public SmbTopKSelector(final int limit,
+                           final Comparator<? super T> comparator) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException(String.format("Cannot select '%d' elements", limit));
+        }
+        Objects.requireNonNull(comparator, "Cannot select with a null comparator");
+        this.limit = limit;
+        this.order = Comparator.<Candidate<T>, T>comparing(candidate -> candidate.element, comparator)
+                               .thenComparingLong(candidate -> candidate.sequence);
+        this.heap = new PriorityQueue<>(Math.min(limit, MAX_INITIAL_CAPACITY), order.reversed());
+    }
+
+    /**
+     * Offers an element to the selection.
+     *
+     * @param element the element to offer
+     * @return the element which dropped out of the selection, which is either the offered one or a previously selected one,
+     * or null if the selection has not been full yet
+     */
+    public T offer(final T element) {
+        final Candidate<T> candidate = new Candidate<>(element, sequence++);
+        if (heap.size() < limit) {
+            heap.add(candidate);
+            return null;
+        }
+        final Candidate<T> last = heap.peek();
+        if (order.compare(candidate, last) >= 0) {
+            return element;
+        }
+        heap.poll();
+        heap.add(candidate);
+        return last.element;
+    }
+
+    /**
+     * Removes the selected elements from the selection.
+     *
+     * @return the selected elements in the given order
+     */
+    public List<T> drain() {
+        final List<Candidate<T>> candidates = new ArrayList<>(heap);
+        heap.clear();
+        candidates.sort(order);
+        final List<T> answer = new ArrayList<>(candidates.size());
+        candidates.forEach(candidate -> answer.add(candidate.element));
+        return answer;
+    }
+
+    /**
+     * An offered element and its position in the stream.
+     */
+    private static final class Candidate<T> {
+
+        private final T element;
+        private final long sequence;
+
+        private Candidate(final T element,
+                          final long sequence) {
+            this.element = element;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj.strategy;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.component.file.GenericFile;
+import org.apache.camel.component.file.GenericFileEndpoint;
+import org.apache.camel.component.file.GenericFileOperations;
+import org.apache.camel.component.file.strategy.GenericFileRenameProcessStrategy;
+import org.apache.camel.component.smbj.SmbCommitBatch;
+import org.apache.camel.component.smbj.SmbEndpoint;
+import org.apache.camel.component.smbj.SmbFile;
+import org.apache.camel.component.smbj.SmbFileOperations;
+import org.apache.camel.util.ExchangeHelper;
+
+/**
+ * This process strategy queues the move of a processed file in the commit batch of the endpoint, instead of moving it right away.
+ * The retrieved file resources are released on commit as usual, whereas the read lock and the in-progress entry of the file
+ * are released once the move has been committed, so the file is not picked up again in the meantime.
+ * The begin and failure moves are not queued, because the file is processed or picked up again right after them.
+ *
+ * @since 10/16/2026
+ */
+public class SmbBatchRenameProcessStrategy extends GenericFileRenameProcessStrategy<SmbFile> {
+
+    private SmbCommitBatch commitBatch;
+
+    @Override
+    public void prepareOnStartup(GenericFileOperations<SmbFile> operations,
+                                 GenericFileEndpoint<SmbFile> endpoint) throws Exception {
+        super.prepareOnStartup(operations, endpoint);
+        if (endpoint instanceof SmbEndpoint && ((SmbEndpoint) endpoint).getCommitBatchSize() > 0) {
+            commitBatch = ((SmbEndpoint) endpoint).getCommitBatch();
+        }
+    }
+
+    @Override
+    public void commit(GenericFileOperations<SmbFile> operations,
+                       GenericFileEndpoint<SmbFile> endpoint,
+                       Exchange exchange,
+                       GenericFile<SmbFile> file) throws Exception {
+        if (commitBatch == null || getCommitRenamer() == null) {
+            super.commit(operations, endpoint, exchange, file);
+            return;
+        }
+
+        boolean full = false;
+        boolean queued = false;
+        try {
+            // The target is evaluated on a copy, the same way as the file component does
+            final Exchange copy = ExchangeHelper.createCopy(exchange, true);
+            file.bindToExchange(copy);
+            copy.getIn().setMessageId(exchange.getIn().getMessageId());
+            copy.setExchangeId(exchange.getExchangeId());
+            final GenericFile<SmbFile> target = getCommitRenamer().renameFile(copy, file);
+            full = commitBatch.addRename(file.getAbsoluteFilePath(),
+                                         target.getAbsoluteFilePath(),
+                                         file.getAbsoluteFilePath(),
+                                         () -> releaseExclusiveReadLock(operations, exchange, file));
+            queued = true;
+        } finally {
+            if (!queued) {
+                releaseExclusiveReadLock(operations, exchange, file);
+            }
+            deleteLocalWorkFile(exchange);
+            operations.releaseRetrievedFileResources(exchange);
+        }
+        if (full) {
+            commitBatch.flush((SmbFileOperations) operations);
+        }
+    }
+
+    private void releaseExclusiveReadLock(final GenericFileOperations<SmbFile> operations,
+                                          final Exchange exchange,
+                                          final GenericFile<SmbFile> file) throws Exception {
+        if (exclusiveReadLockStrategy != null) {
+            exclusiveReadLockStrategy.releaseExclusiveReadLockOnCommit(operations, file, exchange);
+        }
+    }
+}
@@ -22,7 +22,9 @@ import org.apache.camel.component.file.GenericFile;
 import org.apache.camel.component.file.GenericFileEndpoint;
 import org.apache.camel.component.file.GenericFileExclusiveReadLockStrategy;
 import org.apache.camel.component.file.GenericFileOperations;
+import org.apache.camel.component.smbj.SmbEndpoint;
 import org.apache.camel.component.smbj.SmbFile;
+import org.apache.camel.component.smbj.SmbFileStabilityTracker;
 import org.apache.camel.util.CamelLogger;
 import org.apache.camel.util.StopWatch;
 import org.slf4j.Logger;
@@ -46,16 +48,26 @@ public class SmbChangedExclusiveReadLockStrategy implements GenericFileExclusive
     private long minLength = 1;
     private long minAge;
     private boolean fastExistsCheck;
+    private SmbFileStabilityTracker stabilityTracker;
 
     @Override
     public void prepareOnStartup(GenericFileOperations<SmbFile> genericFileOperations,
                                  GenericFileEndpoint<SmbFile> genericFileEndpoint) throws Exception {
-        // noop
+        if (genericFileEndpoint instanceof SmbEndpoint && ((SmbEndpoint) genericFileEndpoint).isReadLockAcrossPolls()) {
+            stabilityTracker = ((SmbEndpoint) genericFileEndpoint).getStabilityTracker();
+        }
     }
 
     public boolean acquireExclusiveReadLock(GenericFileOperations<SmbFile> operations,
                                             GenericFile<SmbFile> file,
                                             Exchange exchange) throws Exception {
+        if (stabilityTracker != null) {
+            // The consumer feeds the tracker with each listing, so a file which is not stable yet is skipped until a later poll
+            final boolean stable = stabilityTracker.isStable(file.getAbsoluteFilePath(), minLength, minAge);
+            LOG.trace(String.format("Read lock for '%s' %s by the listings of the previous polls", file, stable ? "acquired" : "not acquired"));
+            return stable;
+        }
+
         boolean exclusive = false;
 
         LOG.trace("Waiting for exclusive read lock to file: " + file);
@@ -173,7 +185,9 @@ public class SmbChangedExclusiveReadLockStrategy implements GenericFileExclusive
     public void releaseExclusiveReadLockOnCommit(GenericFileOperations<SmbFile> operations,
                                                  GenericFile<SmbFile> file,
                                                  Exchange exchange) throws Exception {
-        // noop
+        if (stabilityTracker != null) {
+            stabilityTracker.forget(file.getAbsoluteFilePath());
+        }
     }
 
     public long getTimeout() {
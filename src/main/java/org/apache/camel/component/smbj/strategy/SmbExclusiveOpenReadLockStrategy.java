@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj.strategy;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.LoggingLevel;
+import org.apache.camel.component.file.GenericFile;
+import org.apache.camel.component.file.GenericFileEndpoint;
+import org.apache.camel.component.file.GenericFileExclusiveReadLockStrategy;
+import org.apache.camel.component.file.GenericFileOperations;
+import org.apache.camel.component.smbj.SmbFile;
+import org.apache.camel.component.smbj.SmbFileOperations;
+import org.apache.camel.component.smbj.SmbLockedFile;
+import org.apache.camel.util.CamelLogger;
+import org.apache.camel.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This read lock strategy opens the file without sharing write access, which the server rejects with a sharing violation
+ * as long as a writer has the file open. The open file is kept as the lock and reused to retrieve the file,
+ * until it is released on commit, rollback or abort.
+ *
+ * @since 10/16/2026
+ */
+public class SmbExclusiveOpenReadLockStrategy implements GenericFileExclusiveReadLockStrategy<SmbFile> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SmbExclusiveOpenReadLockStrategy.class);
+    private long timeout;
+    private long checkInterval = 1000;
+    private LoggingLevel readLockLoggingLevel = LoggingLevel.DEBUG;
+
+    @Override
+    public void prepareOnStartup(GenericFileOperations<SmbFile> operations,
+                                 GenericFileEndpoint<SmbFile> endpoint) throws Exception {
+        // noop
+    }
+
+    @Override
+    public boolean acquireExclusiveReadLock(GenericFileOperations<SmbFile> operations,
+                                            GenericFile<SmbFile> file,
+                                            Exchange exchange) throws Exception {
+        final StopWatch watch = new StopWatch();
+        while (true) {
+            final SmbLockedFile lockedFile = ((SmbFileOperations) operations).lockFile(file.getAbsoluteFilePath());
+            if (lockedFile != null) {
+                LOG.trace(String.format("Read lock acquired for '%s'", file));
+                exchange.setProperty(SmbFileOperations.SMB_EXCLUSIVE_READ_LOCK, lockedFile);
+                return true;
+            }
+            // Without a timeout the file is skipped until a later poll, instead of waiting for the writer
+            if (timeout <= 0 || watch.taken() + checkInterval > timeout) {
+                CamelLogger.log(LOG, readLockLoggingLevel, String.format("Cannot acquire read lock, because the file is in use. Will skip the file: %s", file));
+                return false;
+            }
+            try {
+                Thread.sleep(checkInterval);
+            } catch (InterruptedException e) {
+                LOG.debug("Sleep interrupted while waiting for exclusive read lock, so breaking out");
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public void releaseExclusiveReadLockOnAbort(GenericFileOperations<SmbFile> operations,
+                                                GenericFile<SmbFile> file,
+                                                Exchange exchange) throws Exception {
+        release(exchange);
+    }
+
+    @Override
+    public void releaseExclusiveReadLockOnRollback(GenericFileOperations<SmbFile> operations,
+                                                   GenericFile<SmbFile> file,
+                                                   Exchange exchange) throws Exception {
+        release(exchange);
+    }
+
+    @Override
+    public void releaseExclusiveReadLockOnCommit(GenericFileOperations<SmbFile> operations,
+                                                 GenericFile<SmbFile> file,
+                                                 Exchange exchange) throws Exception {
+        release(exchange);
+    }
+
+    private void release(final Exchange exchange) {
+        final SmbLockedFile lockedFile = (SmbLockedFile) exchange.removeProperty(SmbFileOperations.SMB_EXCLUSIVE_READ_LOCK);
+        if (lockedFile != null) {
+            lockedFile.close();
+        }
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getCheckInterval() {
+        return checkInterval;
+    }
+
+    @Override
+    public void setCheckInterval(long checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+
+    @Override
+    public void setReadLockLoggingLevel(LoggingLevel readLockLoggingLevel) {
+        this.readLockLoggingLevel = readLockLoggingLevel;
+    }
+
+    @Override
+    public void setMarkerFiler(boolean markerFiler) {
+        // noop - not supported by smb
+    }
+
+    @Override
+    public void setDeleteOrphanLockFiles(boolean deleteOrphanLockFiles) {
+        // noop - not supported by smb
+    }
+}
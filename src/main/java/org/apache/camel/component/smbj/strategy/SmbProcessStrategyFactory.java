@@ -18,6 +18,7 @@ package org.apache.camel.component.smbj.strategy;
 
 import org.apache.camel.CamelContext;
 import org.apache.camel.Expression;
+import org.apache.camel.LoggingLevel;
 import org.apache.camel.component.file.GenericFileExclusiveReadLockStrategy;
 import org.apache.camel.component.file.GenericFileProcessStrategy;
 import org.apache.camel.component.file.strategy.*;
@@ -49,7 +50,7 @@ public class SmbProcessStrategyFactory {
         boolean isMove = moveExpression != null || preMoveExpression != null || moveFailedExpression != null;
 
         if (isDelete) {
-            GenericFileDeleteProcessStrategy<SmbFile> strategy = new GenericFileDeleteProcessStrategy<SmbFile>();
+            GenericFileDeleteProcessStrategy<SmbFile> strategy = new SmbBatchDeleteProcessStrategy();
             strategy.setExclusiveReadLockStrategy(getExclusiveReadLockStrategy(params));
             if (preMoveExpression != null) {
                 GenericFileExpressionRenamer<SmbFile> renamer = new GenericFileExpressionRenamer<SmbFile>();
@@ -63,7 +64,7 @@ public class SmbProcessStrategyFactory {
             }
             return strategy;
         } else if (isMove || isNoop) {
-            GenericFileRenameProcessStrategy<SmbFile> strategy = new GenericFileRenameProcessStrategy<SmbFile>();
+            GenericFileRenameProcessStrategy<SmbFile> strategy = new SmbBatchRenameProcessStrategy();
             strategy.setExclusiveReadLockStrategy(getExclusiveReadLockStrategy(params));
             if (!isNoop && moveExpression != null) {
                 // move on commit is only possible if not noop
@@ -147,6 +148,21 @@ public class SmbProcessStrategyFactory {
                     readLockStrategy.setMarkerFiler(readLockMarkerFile);
                 }
                 return readLockStrategy;
+            } else if ("exclusive".equals(readLock)) {
+                SmbExclusiveOpenReadLockStrategy readLockStrategy = new SmbExclusiveOpenReadLockStrategy();
+                Long timeout = (Long) params.get("readLockTimeout");
+                if (timeout != null) {
+                    readLockStrategy.setTimeout(timeout);
+                }
+                Long checkInterval = (Long) params.get("readLockCheckInterval");
+                if (checkInterval != null) {
+                    readLockStrategy.setCheckInterval(checkInterval);
+                }
+                LoggingLevel readLockLoggingLevel = (LoggingLevel) params.get("readLockLoggingLevel");
+                if (readLockLoggingLevel != null) {
+                    readLockStrategy.setReadLockLoggingLevel(readLockLoggingLevel);
+                }
+                return readLockStrategy;
             }
         }
 
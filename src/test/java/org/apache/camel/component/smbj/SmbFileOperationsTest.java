@@ -0,0 +1,232 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.mssmb2.copy.CopyChunkRequest;
+import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smbj.common.SMBRuntimeException;
+import org.apache.camel.component.file.GenericFileExist;
+import org.apache.camel.component.file.GenericFileOperationFailedException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks how the strategy for existing files is resolved by the create disposition and the failure of the create,
+ * and how the content of a file is copied when it is moved to another share.
+ *
+ * @since 10/16/2026
+ */
+public class SmbFileOperationsTest {
+
+    private static final String NAME = "dir\\file.txt";
+
+    @Test
+    public void overrideOverwritesOrCreatesTheFile() {
+        assertEquals(SMB2CreateDisposition.FILE_OVERWRITE_IF, SmbFileOperations.toCreateDisposition(GenericFileExist.Override));
+    }
+
+    @Test
+    public void failAndIgnoreOnlyCreateANewFile() {
+        assertEquals(SMB2CreateDisposition.FILE_CREATE, SmbFileOperations.toCreateDisposition(GenericFileExist.Fail));
+        assertEquals(SMB2CreateDisposition.FILE_CREATE, SmbFileOperations.toCreateDisposition(GenericFileExist.Ignore));
+    }
+
+    @Test
+    public void appendOpensOrCreatesTheFile() {
+        assertEquals(SMB2CreateDisposition.FILE_OPEN_IF, SmbFileOperations.toCreateDisposition(GenericFileExist.Append));
+    }
+
+    @Test
+    public void moveAndTryRenameOverwriteTheFile() {
+        // The existing file has been moved away or the temp file is renamed afterwards
+        assertEquals(SMB2CreateDisposition.FILE_OVERWRITE_IF, SmbFileOperations.toCreateDisposition(GenericFileExist.Move));
+        assertEquals(SMB2CreateDisposition.FILE_OVERWRITE_IF, SmbFileOperations.toCreateDisposition(GenericFileExist.TryRename));
+    }
+
+    @Test
+    public void collisionIsIgnoredWithIgnore() {
+        SmbFileOperations.handleStoreOpenFailure(createFailure(NtStatus.STATUS_OBJECT_NAME_COLLISION), NAME, GenericFileExist.Ignore);
+    }
+
+    @Test
+    public void collisionWithADirectoryIsIgnoredWithIgnore() {
+        // The create of a new file collides with a directory of the same name as well, which the file component ignores too
+        SmbFileOperations.handleStoreOpenFailure(createFailure(NtStatus.STATUS_OBJECT_NAME_COLLISION), "dir", GenericFileExist.Ignore);
+    }
+
+    @Test
+    public void collisionFailsWithFail() {
+        assertStoreFails(NtStatus.STATUS_OBJECT_NAME_COLLISION, GenericFileExist.Fail, "File already exist");
+    }
+
+    @Test
+    public void directoryFailsWithOverride() {
+        assertStoreFails(NtStatus.STATUS_FILE_IS_A_DIRECTORY, GenericFileExist.Override, "is a directory");
+    }
+
+    @Test
+    public void directoryFailsWithAppend() {
+        assertStoreFails(NtStatus.STATUS_FILE_IS_A_DIRECTORY, GenericFileExist.Append, "is a directory");
+    }
+
+    @Test
+    public void directoryFailsWithIgnore() {
+        assertStoreFails(NtStatus.STATUS_FILE_IS_A_DIRECTORY, GenericFileExist.Ignore, "is a directory");
+    }
+
+    @Test
+    public void otherFailuresAreRethrown() {
+        for (final GenericFileExist fileExist : GenericFileExist.values()) {
+            final SMBApiException failure = createFailure(NtStatus.STATUS_ACCESS_DENIED);
+            try {
+                SmbFileOperations.handleStoreOpenFailure(failure, NAME, fileExist);
+                fail(String.format("Expected the failure to be rethrown for fileExist=%s", fileExist));
+            } catch (SMBApiException e) {
+                assertSame(failure, e);
+            }
+        }
+    }
+
+    @Test
+    public void crossShareCopyIsDoneByTheServerIfPossible() throws Exception {
+        final List<String> steps = new ArrayList<>();
+        SmbFileOperations.copyContent(() -> steps.add("server"), () -> steps.add("stream"), () -> steps.add("discard"), NAME);
+
+        assertEquals(Collections.singletonList("server"), steps);
+    }
+
+    @Test
+    public void crossShareCopyIsStreamedIfSmbjRejectsTheServerSideCopy() throws Exception {
+        final List<String> steps = new ArrayList<>();
+        SmbFileOperations.copyContent(() -> {
+            // smbj rejects a remote copy between files of different disk shares before sending anything
+            throw new SMBRuntimeException("Remote copy is only possible between files on the same server");
+        }, () -> steps.add("stream"), () -> steps.add("discard"), NAME);
+
+        assertEquals(Collections.singletonList("stream"), steps);
+    }
+
+    @Test
+    public void crossShareCopyIsStreamedIfTheServerRejectsTheServerSideCopy() throws Exception {
+        final List<String> steps = new ArrayList<>();
+        SmbFileOperations.copyContent(() -> {
+            throw createFailure(NtStatus.STATUS_NOT_SUPPORTED);
+        }, () -> steps.add("stream"), () -> steps.add("discard"), NAME);
+
+        assertEquals(Collections.singletonList("stream"), steps);
+    }
+
+    @Test
+    public void crossShareCopyDiscardsTheDestinationIfBothCopiesFail() {
+        final List<String> steps = new ArrayList<>();
+        final IOException failure = new IOException("Stream failed");
+        try {
+            SmbFileOperations.copyContent(() -> {
+                throw createFailure(NtStatus.STATUS_NOT_SUPPORTED);
+            }, () -> {
+                throw failure;
+            }, () -> steps.add("discard"), NAME);
+            fail("Expected the copy to fail");
+        } catch (Exception e) {
+            assertSame(failure, e);
+        }
+        assertEquals(Collections.singletonList("discard"), steps);
+    }
+
+    @Test
+    public void crossShareCopyIsNotStreamedOverABrokenConnection() {
+        final List<String> steps = new ArrayList<>();
+        final SMBRuntimeException failure = new SMBRuntimeException(new TransportException("Connection reset"));
+        try {
+            SmbFileOperations.copyContent(() -> {
+                throw failure;
+            }, () -> steps.add("stream"), () -> steps.add("discard"), NAME);
+            fail("Expected the copy to fail");
+        } catch (Exception e) {
+            assertSame(failure, e);
+        }
+        assertEquals(Collections.singletonList("discard"), steps);
+    }
+
+    @Test
+    public void crossShareCopyKeepsTheFailureIfTheDestinationCannotBeDiscarded() {
+        final IOException failure = new IOException("Stream failed");
+        final IllegalStateException discardFailure = new IllegalStateException("Discard failed");
+        try {
+            SmbFileOperations.copyContent(() -> {
+                throw createFailure(NtStatus.STATUS_NOT_SUPPORTED);
+            }, () -> {
+                throw failure;
+            }, () -> {
+                throw discardFailure;
+            }, NAME);
+            fail("Expected the copy to fail");
+        } catch (Exception e) {
+            assertSame(failure, e);
+            assertSame(discardFailure, e.getSuppressed()[0]);
+        }
+    }
+
+    @Test
+    public void copyChunksCoverTheContentWithinTheRequestLimits() {
+        final long length = SmbFileOperations.COPY_CHUNKS_PER_REQUEST * SmbFileOperations.COPY_CHUNK_SIZE + 10;
+        final List<CopyChunkRequest.Chunk> first = SmbFileOperations.createCopyChunks(0, length);
+
+        assertEquals(SmbFileOperations.COPY_CHUNKS_PER_REQUEST, first.size());
+        long position = 0;
+        for (final CopyChunkRequest.Chunk chunk : first) {
+            assertEquals(position, chunk.getSrcOffset());
+            assertEquals(position, chunk.getTgtOffset());
+            assertEquals(SmbFileOperations.COPY_CHUNK_SIZE, chunk.getLength());
+            position += chunk.getLength();
+        }
+        final List<CopyChunkRequest.Chunk> rest = SmbFileOperations.createCopyChunks(position, length - position);
+        assertEquals(1, rest.size());
+        assertEquals(position, rest.get(0).getSrcOffset());
+        assertEquals(10, rest.get(0).getLength());
+        assertTrue(SmbFileOperations.createCopyChunks(0, 0).isEmpty());
+    }
+
+    private static void assertStoreFails(final NtStatus status,
+                                         final GenericFileExist fileExist,
+                                         final String message) {
+        try {
+            SmbFileOperations.handleStoreOpenFailure(createFailure(status), NAME, fileExist);
+            fail(String.format("Expected the store to fail for '%s' with fileExist=%s", status, fileExist));
+        } catch (GenericFileOperationFailedException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+            assertTrue(e.getMessage(), e.getMessage().contains(NAME));
+        }
+    }
+
+    private static SMBApiException createFailure(final NtStatus status) {
+        return new SMBApiException(status.getValue(), SMB2MessageCommandCode.SMB2_CREATE, "Create failed", null);
+    }
+}
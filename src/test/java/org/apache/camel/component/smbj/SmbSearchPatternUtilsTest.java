@@ -0,0 +1,212 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import org.apache.camel.util.AntPathMatcher;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that no converted search pattern is narrower than its filter, which is matched the same way as by the file component.
+ * The server matches the search pattern case insensitive, whereby '*' matches any chars and '?' matches a single char.
+ *
+ * @since 10/16/2026
+ */
+public class SmbSearchPatternUtilsTest {
+
+    private static final char[] ALPHABET = {'a', 'B', 't', 'x', '.', '-', ' ', '$', '\uD83D', '\uDE00'};
+    private static final List<String> NAMES = names();
+
+    @Test
+    public void fromRegexConvertsLiteralsAndWildcards() {
+        assertEquals("report.csv", SmbSearchPatternUtils.fromRegex("report\\.csv"));
+        assertEquals("report*.csv", SmbSearchPatternUtils.fromRegex("report.*\\.csv"));
+        assertEquals("a*b", SmbSearchPatternUtils.fromRegex("a.b"));
+        assertEquals("a*", SmbSearchPatternUtils.fromRegex("a..*"));
+        assertEquals("price$", SmbSearchPatternUtils.fromRegex("price\\$"));
+    }
+
+    @Test
+    public void fromRegexStripsAnchors() {
+        assertEquals("report.csv", SmbSearchPatternUtils.fromRegex("^report\\.csv$"));
+        assertEquals("*.csv", SmbSearchPatternUtils.fromRegex("^.*\\.csv"));
+        assertNull(SmbSearchPatternUtils.fromRegex("^$"));
+        assertNull(SmbSearchPatternUtils.fromRegex("a^b"));
+        assertNull(SmbSearchPatternUtils.fromRegex("a$b"));
+        assertNull(SmbSearchPatternUtils.fromRegex("a\\\\$"));
+    }
+
+    @Test
+    public void fromRegexRejectsMatchAll() {
+        assertNull(SmbSearchPatternUtils.fromRegex(".*"));
+        assertNull(SmbSearchPatternUtils.fromRegex("^.*$"));
+        assertNull(SmbSearchPatternUtils.fromRegex(".*.*"));
+        assertNull(SmbSearchPatternUtils.fromRegex("."));
+        assertNull(SmbSearchPatternUtils.fromRegex(""));
+        assertNull(SmbSearchPatternUtils.fromRegex(null));
+    }
+
+    @Test
+    public void fromRegexRejectsQuantifiers() {
+        for (final String regex : Arrays.asList("ab*", "ab+", "ab?", "ab{2}", ".+", ".?", ".{2}", ".*?", ".*+", "\\.*", "\\.+", "a\\.{2}")) {
+            assertNull(regex, SmbSearchPatternUtils.fromRegex(regex));
+        }
+    }
+
+    @Test
+    public void fromRegexRejectsUnsupportedConstructs() {
+        for (final String regex : Arrays.asList("[ab]c", "(a|b)", "a|b", "\\d+", "\\w", "\\Qa.b\\E", "(?i)a", "a\\\\b", "a\\*", "a\\?", "a<b", "a\"b", "a\\")) {
+            assertNull(regex, SmbSearchPatternUtils.fromRegex(regex));
+        }
+    }
+
+    @Test
+    public void fromRegexIsNeverNarrowerThanTheRegex() {
+        for (final String regex : Arrays.asList("a\\.t", "a.t", "a.*", ".*x", "^a.*t$", "a..", "B.x", "\\-a", "a\\ t", "\\$.*", ".a.", "a.*\\..*", "^..$")) {
+            final Pattern compiled = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+            assertNeverNarrower(regex, SmbSearchPatternUtils::fromRegex, name -> compiled.matcher(name).matches());
+        }
+    }
+
+    @Test
+    public void fromAntIncludeConvertsWildcards() {
+        assertEquals("*.txt*", SmbSearchPatternUtils.fromAntInclude("*.txt"));
+        assertEquals("*report?.csv*", SmbSearchPatternUtils.fromAntInclude("report?.csv"));
+        assertEquals("*.txt*", SmbSearchPatternUtils.fromAntInclude(" **.txt "));
+    }
+
+    @Test
+    public void fromAntIncludeRejectsPathsAndLists() {
+        for (final String antInclude : Arrays.asList("**/*.txt", "dir/*.txt", "dir\\*.txt", "*.txt,*.csv", "**", "*", " ", "a:b", "a|b", "a<b")) {
+            assertNull(antInclude, SmbSearchPatternUtils.fromAntInclude(antInclude));
+        }
+        assertNull(SmbSearchPatternUtils.fromAntInclude(null));
+    }
+
+    @Test
+    public void fromAntIncludeIsNeverNarrowerThanTheAntPattern() {
+        final AntPathMatcher matcher = new AntPathMatcher();
+        for (final String antInclude : Arrays.asList("a.t", "a*", "*x", "?.t", "a?*", "*.*", "B*x", "**a", "a ", " a", "$?", "*-*")) {
+            assertNeverNarrower(antInclude, SmbSearchPatternUtils::fromAntInclude, name -> matcher.match(antInclude, name));
+        }
+    }
+
+    @Test
+    public void fromFileNameMatchesExactlyThisName() {
+        assertEquals("report.csv", SmbSearchPatternUtils.fromFileName("report.csv"));
+        for (final String fileName : Arrays.asList("a*", "a?", "dir/a", "dir\\a", "a:b", "a<b", "", null)) {
+            assertNull(fileName, SmbSearchPatternUtils.fromFileName(fileName));
+        }
+        for (final String fileName : Arrays.asList("a.t", " a", "$x", "a\uD83D\uDE00")) {
+            assertNeverNarrower(fileName, SmbSearchPatternUtils::fromFileName, fileName::equals);
+        }
+    }
+
+    private static void assertNeverNarrower(final String filter,
+                                            final Function<String, String> converter,
+                                            final Predicate<String> filterMatches) {
+        final String pattern = converter.apply(filter);
+        if (pattern == null) {
+            return;
+        }
+        boolean matched = false;
+        for (final String name : NAMES) {
+            if (filterMatches.test(name)) {
+                matched = true;
+                assertTrue(String.format("Search pattern '%s' of filter '%s' rejects '%s'", pattern, filter, name), serverMatches(pattern, name));
+            }
+        }
+        assertTrue(String.format("Filter '%s' matched none of the names", filter), matched);
+    }
+
+    /**
+     * Matches a name the way the server matches a search pattern, case insensitive with '*' and '?' as wildcards.
+     */
+    private static boolean serverMatches(final String pattern,
+                                         final String name) {
+        return serverMatches(pattern, 0, name, 0);
+    }
+
+    private static boolean serverMatches(final String pattern,
+                                         final int patternIndex,
+                                         final String name,
+                                         final int nameIndex) {
+        if (patternIndex == pattern.length()) {
+            return nameIndex == name.length();
+        }
+        final char c = pattern.charAt(patternIndex);
+        if (c == '*') {
+            for (int i = nameIndex; i <= name.length(); i++) {
+                if (serverMatches(pattern, patternIndex + 1, name, i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (nameIndex == name.length()) {
+            return false;
+        }
+        final boolean same = c == '?' || Character.toUpperCase(c) == Character.toUpperCase(name.charAt(nameIndex));
+        return same && serverMatches(pattern, patternIndex + 1, name, nameIndex + 1);
+    }
+
+    /**
+     * @return all names up to three chars and random longer names of the alphabet, which includes a surrogate pair,
+     * and the names which are matched by a '.' of a regex or due to the trimming of the ant path matcher
+     */
+    private static List<String> names() {
+        final List<String> names = new ArrayList<>(Arrays.asList("a\uD83D\uDE00t", "a\uD83D\uDE00", " a.t", "a.t ", "\ta.t", "A.T"));
+        names.add("");
+        for (int length = 1; length <= 3; length++) {
+            final int[] digits = new int[length];
+            while (true) {
+                final char[] chars = new char[length];
+                for (int i = 0; i < length; i++) {
+                    chars[i] = ALPHABET[digits[i]];
+                }
+                names.add(new String(chars));
+                int position = length - 1;
+                while (position >= 0 && ++digits[position] == ALPHABET.length) {
+                    digits[position--] = 0;
+                }
+                if (position < 0) {
+                    break;
+                }
+            }
+        }
+        final Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            final char[] chars = new char[4 + random.nextInt(5)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = ALPHABET[random.nextInt(ALPHABET.length)];
+            }
+            names.add(new String(chars));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.smbj;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @since 10/16/2026
+ */
+public class SmbTopKSelectorTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLimitOfZero() {
+        new SmbTopKSelector<String>(0, Comparator.naturalOrder());
+    }
+
+    @Test
+    public void offerReturnsNullUntilFull() {
+        final SmbTopKSelector<Integer> selector = new SmbTopKSelector<>(3, Comparator.naturalOrder());
+
+        assertNull(selector.offer(5));
+        assertNull(selector.offer(1));
+        assertNull(selector.offer(3));
+        assertEquals(Arrays.asList(1, 3, 5), selector.drain());
+    }
+
+    @Test
+    public void offerDropsTheOfferedElementIfItIsBeyondTheSelection() {
+        final SmbTopKSelector<Integer> selector = new SmbTopKSelector<>(2, Comparator.naturalOrder());
+        selector.offer(1);
+        selector.offer(2);
+
+        assertEquals(Integer.valueOf(3), selector.offer(3));
+        assertEquals(Arrays.asList(1, 2), selector.drain());
+    }
+
+    @Test
+    public void offerDropsTheLastSelectedElementIfTheOfferedOneIsBefore() {
+        final SmbTopKSelector<Integer> selector = new SmbTopKSelector<>(2, Comparator.naturalOrder());
+        selector.offer(2);
+        selector.offer(3);
+
+        assertEquals(Integer.valueOf(3), selector.offer(1));
+        assertEquals(Arrays.asList(1, 2), selector.drain());
+    }
+
+    @Test
+    public void offerDropsTheOfferedElementIfItEqualsTheLastSelectedOne() {
+        final SmbTopKSelector<Item> selector = new SmbTopKSelector<>(2, Comparator.comparingInt(item -> item.key));
+        final Item first = new Item(1, "first");
+        final Item second = new Item(2, "second");
+        final Item equal = new Item(2, "equal");
+        selector.offer(first);
+        selector.offer(second);
+
+        // The equal element has been offered later, so it is ordered after the selected one
+        assertSame(equal, selector.offer(equal));
+        assertEquals(Arrays.asList(first, second), selector.drain());
+    }
+
+    @Test
+    public void drainKeepsTheOfferOrderOfEqualElements() {
+        final SmbTopKSelector<Item> selector = new SmbTopKSelector<>(4, Comparator.comparingInt(item -> item.key));
+        final Item a = new Item(2, "a");
+        final Item b = new Item(1, "b");
+        final Item c = new Item(2, "c");
+        final Item d = new Item(1, "d");
+        final Item e = new Item(2, "e");
+        for (final Item item : Arrays.asList(a, b, c, d, e)) {
+            selector.offer(item);
+        }
+
+        assertEquals(Arrays.asList(b, d, a, c), selector.drain());
+    }
+
+    @Test
+    public void drainEmptiesTheSelection() {
+        final SmbTopKSelector<Integer> selector = new SmbTopKSelector<>(2, Comparator.naturalOrder());
+        selector.offer(1);
+        selector.drain();
+
+        assertTrue(selector.drain().isEmpty());
+        assertNull(selector.offer(2));
+        assertEquals(Collections.singletonList(2), selector.drain());
+    }
+
+    @Test
+    public void selectsTheSameElementsAsAStableSort() {
+        final Random random = new Random(42);
+        final List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            items.add(new Item(random.nextInt(50), Integer.toString(i)));
+        }
+        final Comparator<Item> comparator = Comparator.comparingInt(item -> item.key);
+        final SmbTopKSelector<Item> selector = new SmbTopKSelector<>(100, comparator);
+        final List<Item> dropped = new ArrayList<>();
+        for (final Item item : items) {
+            final Item out = selector.offer(item);
+            if (out != null) {
+                dropped.add(out);
+            }
+        }
+
+        final List<Item> expected = items.stream().sorted(comparator).limit(100).collect(Collectors.toList());
+        assertEquals(expected, selector.drain());
+        // Each element beyond the limit dropped out exactly once
+        assertEquals(items.size() - 100, dropped.size());
+        assertTrue(Collections.disjoint(expected, dropped));
+    }
+
+    private static final class Item {
+
+        private final int key;
+        private final String name;
+
+        private Item(final int key,
+                     final String name) {
+            this.key = key;
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return key + ":" + name;
+        }
+    }
+}